@@ -0,0 +1,42 @@
+package ru.hogwarts.school.configuration;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.UUID;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.ehcache.xml.XmlConfiguration;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.Resource;
+
+@Configuration
+public class SecondLevelCacheConfiguration {
+
+    private static final Logger logger = LoggerFactory.getLogger(SecondLevelCacheConfiguration.class);
+
+    // the caching provider shares managers by URI, so every application context gets a URI of its own
+    // and closing one context can no longer close the regions of another one in the same JVM
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(@Value("${spring.cache.jcache.config:classpath:ehcache.xml}") Resource config)
+            throws IOException {
+        EhcacheCachingProvider provider = (EhcacheCachingProvider) Caching.getCachingProvider(
+                EhcacheCachingProvider.class.getName());
+        URI uri = URI.create("urn:hogwarts:hibernate:" + UUID.randomUUID());
+        logger.info("Hibernate second-level cache {} is configured from {}", uri, config);
+        return provider.getCacheManager(uri, new XmlConfiguration(config.getURL(), getClass().getClassLoader()));
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernateCacheManagerCustomizer(CacheManager hibernateCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+    }
+}
@@ -1,22 +1,41 @@
 package ru.hogwarts.school.controller;
 
+import java.io.IOException;
+
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.data.domain.Page;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.model.AvatarSlice;
+import ru.hogwarts.school.service.AvatarCacheStats;
+import ru.hogwarts.school.service.AvatarImportReport;
+import ru.hogwarts.school.service.AvatarImportService;
+import ru.hogwarts.school.service.AvatarReconcileStatus;
+import ru.hogwarts.school.service.AvatarReconciler;
 import ru.hogwarts.school.service.AvatarService;
 
 @RestController
 @RequestMapping
 public class AvatarController {
 
+    private static final int MAX_SLICE_SIZE = 100;
+
     private final AvatarService avatarService;
+    private final AvatarImportService avatarImportService;
+    private final AvatarReconciler avatarReconciler;
 
 
-    public AvatarController(AvatarService avatarService) {
+    public AvatarController(AvatarService avatarService, AvatarImportService avatarImportService,
+                            AvatarReconciler avatarReconciler) {
         this.avatarService = avatarService;
+        this.avatarImportService = avatarImportService;
+        this.avatarReconciler = avatarReconciler;
     }
 
     @GetMapping
@@ -25,4 +44,32 @@ public class AvatarController {
             @RequestParam(defaultValue = "10") Integer size) {
         return avatarService.getAllAvatars(page, size);
     }
+
+    @GetMapping("/avatars")
+    public AvatarSlice getAvatarSlice(
+            @RequestParam(required = false) Long cursor,
+            @RequestParam(defaultValue = "20") Integer size) {
+        return avatarService.getAvatarSlice(cursor, Math.max(1, Math.min(size, MAX_SLICE_SIZE)));
+    }
+
+    @PostMapping(value = "/avatars/import", consumes = {"application/zip", "application/x-zip-compressed"})
+    public AvatarImportReport importAvatars(HttpServletRequest request) throws IOException {
+        return avatarImportService.importArchive(request.getInputStream());
+    }
+
+    @GetMapping("/avatars/reconcile")
+    public AvatarReconcileStatus getReconcileStatus() {
+        return avatarReconciler.status();
+    }
+
+    @PostMapping("/avatars/reconcile")
+    public ResponseEntity<AvatarReconcileStatus> startReconcile() {
+        HttpStatus status = avatarReconciler.start() ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT;
+        return ResponseEntity.status(status).body(avatarReconciler.status());
+    }
+
+    @GetMapping("/avatar/cache-stats")
+    public AvatarCacheStats getCacheStats() {
+        return avatarService.getCacheStats();
+    }
 }
@@ -6,7 +6,8 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import ru.hogwarts.school.model.Faculty;
-import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.model.FacultyStats;
+import ru.hogwarts.school.model.StudentSlice;
 import ru.hogwarts.school.service.FacultyService;
 
 import java.util.*;
@@ -18,6 +19,8 @@ public class FacultyController {
 
     private static final Logger logger = LoggerFactory.getLogger(FacultyController.class);
 
+    private static final int MAX_SLICE_SIZE = 500;
+
     private final FacultyService facultyService;
 
     public FacultyController(FacultyService facultyService) {
@@ -70,8 +73,17 @@ public class FacultyController {
     }
 
     @GetMapping("/{id}/students")
-    public List<Student> getFacultyStudents(@PathVariable Long id) {
-        return facultyService.getFacultyStudents(id);
+    public ResponseEntity<StudentSlice> getFacultyStudents(@PathVariable Long id,
+                                                           @RequestParam(required = false) Long cursor,
+                                                           @RequestParam(defaultValue = "50") Integer size) {
+        return facultyService.getFacultyStudents(id, cursor, Math.max(1, Math.min(size, MAX_SLICE_SIZE)))
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/stats")
+    public List<FacultyStats> getFacultyStats() {
+        return facultyService.getFacultyStats();
     }
 
     @GetMapping("/longest-name")
@@ -5,6 +5,10 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
+import ru.hogwarts.school.service.CacheRegionStats;
+import ru.hogwarts.school.service.EntityCacheStatistics;
+
+import java.util.List;
 
 @RestController
 public class InfoController {
@@ -13,11 +17,14 @@ public class InfoController {
 
     private int serverPort;
     private final String applicationName;
+    private final EntityCacheStatistics entityCacheStatistics;
 
     public InfoController(@Value("${server.port}") int serverPort,
-                          @Value("${spring.application.name}") String applicationName) {
+                          @Value("${spring.application.name}") String applicationName,
+                          EntityCacheStatistics entityCacheStatistics) {
         this.serverPort = serverPort;
         this.applicationName = applicationName;
+        this.entityCacheStatistics = entityCacheStatistics;
         logger.info("InfoController initialized for application: {} on port: {}", applicationName, serverPort);
     }
 
@@ -31,4 +38,10 @@ public class InfoController {
 
         return response;
     }
+
+    @GetMapping("/cache-stats")
+    public List<CacheRegionStats> getCacheStats() {
+        logger.info("Was invoked method for get entity cache statistics");
+        return entityCacheStatistics.regions();
+    }
 }
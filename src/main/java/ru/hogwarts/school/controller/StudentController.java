@@ -1,23 +1,29 @@
 package ru.hogwarts.school.controller;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.Page;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -26,10 +32,24 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.hogwarts.school.model.Avatar;
 import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.model.StudentNameMatch;
+import ru.hogwarts.school.service.AvatarPreview;
 import ru.hogwarts.school.service.AvatarService;
+import ru.hogwarts.school.service.AvatarTooLargeException;
+import ru.hogwarts.school.service.CachedAvatar;
+import ru.hogwarts.school.service.StudentBatchReport;
+import ru.hogwarts.school.service.StudentBatchService;
+import ru.hogwarts.school.service.StudentBatchTooLargeException;
+import ru.hogwarts.school.service.StudentExportFormat;
+import ru.hogwarts.school.service.StudentExportService;
+import ru.hogwarts.school.service.StudentNameIndexStats;
 import ru.hogwarts.school.service.StudentService;
 
 @RestController
@@ -38,12 +58,24 @@ public class StudentController {
 
     private static final Logger logger = LoggerFactory.getLogger(StudentController.class);
 
+    private static final int MAX_NAMES_LIMIT = 100;
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final StudentService studentService;
     private final AvatarService avatarService;
+    private final StudentExportService studentExportService;
+    private final StudentBatchService studentBatchService;
+    private final AvatarResponseWriter avatarResponseWriter = new AvatarResponseWriter();
+    private final long maxAvatarSize;
 
-    public StudentController(StudentService studentService, AvatarService avatarService) {
+    public StudentController(StudentService studentService, AvatarService avatarService,
+                             StudentExportService studentExportService, StudentBatchService studentBatchService,
+                             @Value("${avatars.max.size:307200}") long maxAvatarSize) {
         this.studentService = studentService;
         this.avatarService = avatarService;
+        this.studentExportService = studentExportService;
+        this.studentBatchService = studentBatchService;
+        this.maxAvatarSize = maxAvatarSize;
     }
 
     @GetMapping("{id}")
@@ -63,6 +95,18 @@ public class StudentController {
         return ResponseEntity.ok(Collections.emptyList());
     }
 
+    @GetMapping(params = {"minAge", "maxAge"})
+    public ResponseEntity<Page<Student>> findStudentsByAgeRange(@RequestParam Integer minAge,
+                                                                @RequestParam Integer maxAge,
+                                                                @RequestParam(defaultValue = "0") Integer page,
+                                                                @RequestParam(defaultValue = "20") Integer size) {
+        if (minAge > maxAge || page < 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(studentService.findByAgeRange(minAge, maxAge, page,
+                Math.max(1, Math.min(size, MAX_PAGE_SIZE))));
+    }
+
     @PostMapping
     public Student createStudent(@RequestBody Student student) {
         return studentService.addStudent(student);
@@ -83,10 +127,31 @@ public class StudentController {
         return ResponseEntity.ok().build();
     }
 
+    @PostMapping("/batch")
+    public StudentBatchReport createStudents(@RequestBody List<Student> students) {
+        return studentBatchService.createStudents(students);
+    }
+
+    @PutMapping("/batch")
+    public StudentBatchReport editStudents(@RequestBody List<Student> students) {
+        return studentBatchService.editStudents(students);
+    }
+
+    @DeleteMapping("/batch")
+    public StudentBatchReport deleteStudents(@RequestBody List<Long> ids) {
+        return studentBatchService.deleteStudents(ids);
+    }
+
+    @ExceptionHandler(StudentBatchTooLargeException.class)
+    public ResponseEntity<String> handleBatchTooLarge(StudentBatchTooLargeException e) {
+        logger.warn("Rejected student batch: {}", e.getMessage());
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+
 
     @PostMapping(value = "/{id}/avatar", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<String> uploadAvatar(@PathVariable Long id, @RequestParam MultipartFile avatar) throws IOException {
-        if (avatar.getSize() > 1024 * 300) {
+        if (avatar.getSize() > maxAvatarSize) {
             return ResponseEntity.badRequest().body("File is too big");
         }
 
@@ -94,39 +159,97 @@ public class StudentController {
         return ResponseEntity.ok().build();
     }
 
+    @ExceptionHandler({AvatarTooLargeException.class, MaxUploadSizeExceededException.class})
+    public ResponseEntity<String> handleAvatarTooLarge(Exception e) {
+        logger.warn("Rejected avatar upload: {}", e.getMessage());
+        return ResponseEntity.badRequest().body("File is too big");
+    }
+
     @GetMapping(value = "/{id}/avatar/preview")
-    public ResponseEntity<byte[]> downloadAvatar(@PathVariable Long id) {
-        Optional<Avatar> avatar = avatarService.findAvatarByStudentId(id);
+    public ResponseEntity<Resource> downloadAvatar(@PathVariable Long id,
+                                                   @RequestParam(required = false) Integer w) throws IOException {
+        Optional<AvatarPreview> preview = avatarService.findAvatarPreview(id, w);
 
-        if (avatar.isEmpty()) {
+        if (preview.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
 
         HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.parseMediaType(avatar.get().getMediaType()));
-        headers.setContentLength(avatar.get().getData().length);
+        headers.setContentType(MediaType.parseMediaType(preview.get().mediaType()));
+        headers.setContentLength(preview.get().resource().contentLength());
 
-        return ResponseEntity.status(HttpStatus.OK).headers(headers).body(avatar.get().getData());
+        return ResponseEntity.status(HttpStatus.OK).headers(headers).body(preview.get().resource());
     }
 
     @GetMapping(value = "/{id}/avatar")
-    public void downloadAvatar(@PathVariable Long id, HttpServletResponse response) throws IOException {
+    public void downloadAvatar(@PathVariable Long id, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException {
         Optional<Avatar> avatar = avatarService.findAvatarByStudentId(id);
-
         if (avatar.isEmpty()) {
             response.setStatus(404);
             return;
         }
 
-        Path path = Path.of(avatar.get().getFilePath());
+        Optional<Path> file = avatarService.findAvatarFile(avatar.get());
+        if (file.isPresent()) {
+            avatarResponseWriter.write(request, response, file.get(), avatar.get().getMediaType());
+            return;
+        }
 
-        try (InputStream is = Files.newInputStream(path);
-             OutputStream os = response.getOutputStream()) {
-            response.setStatus(200);
-            response.setContentType(avatar.get().getMediaType());
-            response.setContentLength((int) avatar.get().getFileSize());
-            is.transferTo(os);
+        Optional<CachedAvatar> buffer = avatarService.findAvatarBuffer(id, avatar.get());
+        if (buffer.isPresent()) {
+            write(request, response, buffer.get());
+            return;
         }
+
+        Optional<Resource> data = avatarService.findAvatarData(avatar.get());
+        if (data.isEmpty()) {
+            response.setStatus(404);
+            return;
+        }
+        if (data.get().isFile()) {
+            avatarResponseWriter.write(request, response, data.get().getFile().toPath(), avatar.get().getMediaType());
+            return;
+        }
+
+        buffer = avatarService.cacheAvatarData(id, avatar.get(), data.get());
+        if (buffer.isPresent()) {
+            write(request, response, buffer.get());
+        } else {
+            avatarResponseWriter.write(request, response, ByteBuffer.wrap(data.get().getContentAsByteArray()),
+                    avatar.get().getContentHash(), avatar.get().getMediaType());
+        }
+    }
+
+    private void write(HttpServletRequest request, HttpServletResponse response,
+                       CachedAvatar buffer) throws IOException {
+        try (buffer) {
+            avatarResponseWriter.write(request, response, buffer.data(), buffer.contentHash(), buffer.mediaType());
+        }
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportStudents(@RequestParam(defaultValue = "ndjson") String format,
+                                                                HttpServletRequest request) {
+        logger.info("Was invoked GET method for export students as {}", format);
+        StudentExportFormat exportFormat;
+        try {
+            exportFormat = StudentExportFormat.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType(exportFormat.getMediaType()));
+        headers.setContentDisposition(ContentDisposition.attachment()
+                .filename("students." + exportFormat.getExtension())
+                .build());
+        AsyncWebRequest asyncWebRequest = WebAsyncUtils.getAsyncManager(request).getAsyncWebRequest();
+        if (asyncWebRequest != null) {
+            asyncWebRequest.setTimeout(studentExportService.getTimeout().toMillis());
+        }
+        StreamingResponseBody body = out -> studentExportService.exportStudents(exportFormat, out);
+        return ResponseEntity.ok().headers(headers).body(body);
     }
 
     @GetMapping("/count")
@@ -135,8 +258,8 @@ public class StudentController {
     }
 
     @GetMapping("/last-five")
-    public List<Student> getLastFiveStudents() {
-        return studentService.getLastFiveStudents();
+    public List<Student> getLastFiveStudents(@RequestParam(defaultValue = "5") Integer n) {
+        return studentService.getLastStudents(Math.max(1, Math.min(n, studentService.getRecentStudentsCapacity())));
     }
 
     @GetMapping("/names-starting-with-a")
@@ -145,12 +268,36 @@ public class StudentController {
         return studentService.getStudentNamesStartingWithASorted();
     }
 
+    @GetMapping("/names")
+    public List<String> getStudentNamesByPrefix(@RequestParam(defaultValue = "") String prefix,
+                                                @RequestParam(defaultValue = "20") Integer limit) {
+        logger.info("Was invoked GET method for get student names by prefix");
+        return studentService.getStudentNamesByPrefix(prefix, Math.max(1, Math.min(limit, MAX_NAMES_LIMIT)));
+    }
+
+    @GetMapping("/autocomplete")
+    public List<StudentNameMatch> autocompleteStudentNames(@RequestParam(defaultValue = "") String q,
+                                                           @RequestParam(defaultValue = "10") Integer limit) {
+        return studentService.autocompleteNames(q, Math.max(1, Math.min(limit, MAX_NAMES_LIMIT)));
+    }
+
+    @GetMapping("/autocomplete/stats")
+    public StudentNameIndexStats getAutocompleteStats() {
+        return studentService.getNameIndexStats();
+    }
+
     @GetMapping("/average-age")
     public Double getAverageAge() {
         logger.info("Was invoked GET method for get average age");
         return studentService.getAverageAgeOfAllStudents();
     }
 
+    @GetMapping("/age-histogram")
+    public Map<Integer, Long> getAgeHistogram() {
+        logger.info("Was invoked GET method for get student age histogram");
+        return studentService.getAgeHistogram();
+    }
+
     @GetMapping("/sum-optimized")
     public Integer getSumOptimized() {
         logger.info("Was invoked GET method for get optimized sum");
@@ -0,0 +1,4 @@
+package ru.hogwarts.school.listener;
+
+public record AvatarChangedEvent(Long studentId) {
+}
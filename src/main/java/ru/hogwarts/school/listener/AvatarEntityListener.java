@@ -0,0 +1,25 @@
+package ru.hogwarts.school.listener;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import ru.hogwarts.school.model.Avatar;
+
+@Component
+public class AvatarEntityListener {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public AvatarEntityListener(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostPersist
+    @PostRemove
+    public void onChange(Avatar avatar) {
+        if (avatar.getStudent() != null) {
+            eventPublisher.publishEvent(new AvatarChangedEvent(avatar.getStudent().getId()));
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package ru.hogwarts.school.listener;
+
+import ru.hogwarts.school.model.FacultySnapshot;
+
+public record FacultyChangedEvent(Type type, FacultySnapshot faculty) {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+}
@@ -0,0 +1,38 @@
+package ru.hogwarts.school.listener;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.FacultySnapshot;
+
+@Component
+public class FacultyEntityListener {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public FacultyEntityListener(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostPersist
+    public void onPersist(Faculty faculty) {
+        publish(FacultyChangedEvent.Type.CREATED, faculty);
+    }
+
+    @PostUpdate
+    public void onUpdate(Faculty faculty) {
+        publish(FacultyChangedEvent.Type.UPDATED, faculty);
+    }
+
+    @PostRemove
+    public void onRemove(Faculty faculty) {
+        publish(FacultyChangedEvent.Type.DELETED, faculty);
+    }
+
+    private void publish(FacultyChangedEvent.Type type, Faculty faculty) {
+        eventPublisher.publishEvent(new FacultyChangedEvent(type, FacultySnapshot.of(faculty)));
+    }
+}
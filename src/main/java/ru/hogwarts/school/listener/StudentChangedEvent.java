@@ -0,0 +1,16 @@
+package ru.hogwarts.school.listener;
+
+import ru.hogwarts.school.model.StudentSnapshot;
+
+public record StudentChangedEvent(Type type, StudentSnapshot previous, StudentSnapshot current) {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    public Long studentId() {
+        return current != null ? current.id() : previous.id();
+    }
+}
@@ -0,0 +1,50 @@
+package ru.hogwarts.school.listener;
+
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.model.StudentSnapshot;
+
+@Component
+public class StudentEntityListener {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public StudentEntityListener(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostLoad
+    public void onLoad(Student student) {
+        student.setPersistedState(StudentSnapshot.of(student));
+    }
+
+    @PostPersist
+    public void onPersist(Student student) {
+        StudentSnapshot current = StudentSnapshot.of(student);
+        student.setPersistedState(current);
+        eventPublisher.publishEvent(new StudentChangedEvent(StudentChangedEvent.Type.CREATED, null, current));
+    }
+
+    @PostUpdate
+    public void onUpdate(Student student) {
+        StudentSnapshot previous = student.getPersistedState();
+        StudentSnapshot current = StudentSnapshot.of(student);
+        student.setPersistedState(current);
+        if (!current.equals(previous)) {
+            eventPublisher.publishEvent(new StudentChangedEvent(StudentChangedEvent.Type.UPDATED, previous, current));
+        }
+    }
+
+    @PostRemove
+    public void onRemove(Student student) {
+        StudentSnapshot previous = student.getPersistedState() != null
+                ? student.getPersistedState()
+                : StudentSnapshot.of(student);
+        eventPublisher.publishEvent(new StudentChangedEvent(StudentChangedEvent.Type.DELETED, previous, null));
+    }
+}
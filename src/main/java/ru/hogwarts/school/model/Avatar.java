@@ -1,11 +1,16 @@
 package ru.hogwarts.school.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import ru.hogwarts.school.listener.AvatarEntityListener;
 
-import java.util.Arrays;
 import java.util.Objects;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "avatar")
+@EntityListeners(AvatarEntityListener.class)
 public class Avatar {
 
     @Id
@@ -15,9 +20,7 @@ public class Avatar {
     private String filePath;
     private long fileSize;
     private String mediaType;
-
-    @Lob
-    private byte[] data;
+    private String contentHash;
 
     @OneToOne
     @JoinColumn(name = "student_id")
@@ -41,14 +44,12 @@ public class Avatar {
         if (o == null || getClass() != o.getClass())
             return false;
         Avatar avatar = (Avatar) o;
-        return fileSize == avatar.fileSize && Objects.equals(id, avatar.id) && Objects.equals(filePath, avatar.filePath) && Objects.equals(mediaType, avatar.mediaType) && Arrays.equals(data, avatar.data) && Objects.equals(student, avatar.student);
+        return fileSize == avatar.fileSize && Objects.equals(id, avatar.id) && Objects.equals(filePath, avatar.filePath) && Objects.equals(mediaType, avatar.mediaType) && Objects.equals(contentHash, avatar.contentHash) && Objects.equals(student, avatar.student);
     }
 
     @Override
     public int hashCode() {
-        int result = Objects.hash(id, filePath, mediaType, fileSize, student);
-        result = 31 * result + Arrays.hashCode(data);
-        return result;
+        return Objects.hash(id, filePath, mediaType, fileSize, contentHash, student);
     }
 
     @Override
@@ -58,7 +59,7 @@ public class Avatar {
                 ", filePath='" + filePath + '\'' +
                 ", mediaType='" + mediaType + '\'' +
                 ", fileSize=" + fileSize +
-                ", data=" + Arrays.toString(data) +
+                ", contentHash='" + contentHash + '\'' +
                 ", student=" + student +
                 '}';
     }
@@ -95,12 +96,12 @@ public class Avatar {
         this.fileSize = fileSize;
     }
 
-    public byte[] getData() {
-        return data;
+    public String getContentHash() {
+        return contentHash;
     }
 
-    public void setData(byte[] data) {
-        this.data = data;
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
     }
 
     public Student getStudent() {
@@ -0,0 +1,65 @@
+package ru.hogwarts.school.model;
+
+import jakarta.persistence.*;
+
+import java.sql.Blob;
+import java.util.Objects;
+
+@Entity
+@Table(name = "avatar_blob")
+public class AvatarBlob {
+
+    @Id
+    @Column(name = "avatar_id")
+    private Long avatarId;
+
+    @Lob
+    @Basic(fetch = FetchType.LAZY)
+    private Blob data;
+
+    public AvatarBlob() {
+    }
+
+    public AvatarBlob(Long avatarId, Blob data) {
+        this.avatarId = avatarId;
+        this.data = data;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (o == null || getClass() != o.getClass())
+            return false;
+        AvatarBlob that = (AvatarBlob) o;
+        return Objects.equals(avatarId, that.avatarId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(avatarId);
+    }
+
+    @Override
+    public String toString() {
+        return "AvatarBlob{" +
+                "avatarId=" + avatarId +
+                '}';
+    }
+
+    public Long getAvatarId() {
+        return avatarId;
+    }
+
+    public void setAvatarId(Long avatarId) {
+        this.avatarId = avatarId;
+    }
+
+    public Blob getData() {
+        return data;
+    }
+
+    public void setData(Blob data) {
+        this.data = data;
+    }
+}
@@ -0,0 +1,75 @@
+package ru.hogwarts.school.model;
+
+import jakarta.persistence.*;
+
+import java.util.Objects;
+
+@Entity
+@Table(name = "avatar_chunk")
+@IdClass(AvatarChunkId.class)
+public class AvatarChunk {
+
+    public static final int MAX_SIZE = 64 * 1024;
+
+    @Id
+    @Column(length = 128)
+    private String contentKey;
+
+    @Id
+    private int seq;
+
+    private int length;
+
+    @Column(length = MAX_SIZE)
+    private byte[] data;
+
+    public AvatarChunk() {
+    }
+
+    public AvatarChunk(String contentKey, int seq, byte[] data) {
+        this.contentKey = contentKey;
+        this.seq = seq;
+        this.length = data.length;
+        this.data = data;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (o == null || getClass() != o.getClass())
+            return false;
+        AvatarChunk that = (AvatarChunk) o;
+        return seq == that.seq && Objects.equals(contentKey, that.contentKey);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(contentKey, seq);
+    }
+
+    @Override
+    public String toString() {
+        return "AvatarChunk{" +
+                "contentKey='" + contentKey + '\'' +
+                ", seq=" + seq +
+                ", length=" + length +
+                '}';
+    }
+
+    public String getContentKey() {
+        return contentKey;
+    }
+
+    public int getSeq() {
+        return seq;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+}
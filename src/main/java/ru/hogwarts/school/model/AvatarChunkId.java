@@ -0,0 +1,33 @@
+package ru.hogwarts.school.model;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+public class AvatarChunkId implements Serializable {
+
+    private String contentKey;
+    private int seq;
+
+    public AvatarChunkId() {
+    }
+
+    public AvatarChunkId(String contentKey, int seq) {
+        this.contentKey = contentKey;
+        this.seq = seq;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (o == null || getClass() != o.getClass())
+            return false;
+        AvatarChunkId that = (AvatarChunkId) o;
+        return seq == that.seq && Objects.equals(contentKey, that.contentKey);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(contentKey, seq);
+    }
+}
@@ -0,0 +1,74 @@
+package ru.hogwarts.school.model;
+
+import jakarta.persistence.*;
+
+import java.util.Objects;
+
+@Entity
+@Table(name = "avatar_content")
+public class AvatarContent {
+
+    @Id
+    @Column(length = 64)
+    private String hash;
+
+    private long fileSize;
+    private int refCount;
+
+    public AvatarContent() {
+    }
+
+    public AvatarContent(String hash, long fileSize, int refCount) {
+        this.hash = hash;
+        this.fileSize = fileSize;
+        this.refCount = refCount;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (o == null || getClass() != o.getClass())
+            return false;
+        AvatarContent that = (AvatarContent) o;
+        return fileSize == that.fileSize && refCount == that.refCount && Objects.equals(hash, that.hash);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(hash, fileSize, refCount);
+    }
+
+    @Override
+    public String toString() {
+        return "AvatarContent{" +
+                "hash='" + hash + '\'' +
+                ", fileSize=" + fileSize +
+                ", refCount=" + refCount +
+                '}';
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public void setFileSize(long fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    public int getRefCount() {
+        return refCount;
+    }
+
+    public void setRefCount(int refCount) {
+        this.refCount = refCount;
+    }
+}
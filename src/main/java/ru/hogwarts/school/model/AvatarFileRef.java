@@ -0,0 +1,4 @@
+package ru.hogwarts.school.model;
+
+public record AvatarFileRef(Long id, String filePath) {
+}
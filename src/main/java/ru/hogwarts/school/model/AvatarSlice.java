@@ -0,0 +1,6 @@
+package ru.hogwarts.school.model;
+
+import java.util.List;
+
+public record AvatarSlice(List<AvatarSummary> content, Long nextCursor, boolean hasNext) {
+}
@@ -0,0 +1,8 @@
+package ru.hogwarts.school.model;
+
+public record AvatarSummary(Long id, Long studentId, long fileSize, String mediaType) {
+
+    public String getUrl() {
+        return "/student/" + studentId + "/avatar";
+    }
+}
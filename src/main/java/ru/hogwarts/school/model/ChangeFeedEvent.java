@@ -0,0 +1,11 @@
+package ru.hogwarts.school.model;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+public record ChangeFeedEvent(long sequence, String entity, String type, Long entityId, @JsonRawValue String data) {
+
+    public static ChangeFeedEvent of(ChangeEvent event) {
+        return new ChangeFeedEvent(event.getId(), event.getEntity(), event.getType(), event.getEntityId(),
+                event.getPayload());
+    }
+}
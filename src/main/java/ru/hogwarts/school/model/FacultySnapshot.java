@@ -0,0 +1,8 @@
+package ru.hogwarts.school.model;
+
+public record FacultySnapshot(Long id, String name, String color) {
+
+    public static FacultySnapshot of(Faculty faculty) {
+        return new FacultySnapshot(faculty.getId(), faculty.getName(), faculty.getColor());
+    }
+}
@@ -0,0 +1,9 @@
+package ru.hogwarts.school.model;
+
+public record FacultyStats(Long facultyId, String name, long students, Integer minAge, Integer maxAge,
+                           Double averageAge, long studentsWithAvatar) {
+
+    public double getAvatarCoverage() {
+        return students == 0 ? 0.0 : (double) studentsWithAvatar / students;
+    }
+}
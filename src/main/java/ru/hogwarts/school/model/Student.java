@@ -1,23 +1,36 @@
 package ru.hogwarts.school.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import ru.hogwarts.school.listener.StudentEntityListener;
 
 import java.util.Objects;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "student")
+@Table(indexes = @Index(name = "student_faculty_id_index", columnList = "faculty_id, id"))
+@EntityListeners(StudentEntityListener.class)
 public class Student {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "student_seq")
+    @SequenceGenerator(name = "student_seq", sequenceName = "student_seq", allocationSize = 50)
     private Long id;
 
 
     private String name;
     private int age;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "faculty_id")
     private Faculty faculty;
 
+    @Transient
+    @JsonIgnore
+    private StudentSnapshot persistedState;
+
     public Student() {
     }
 
@@ -81,4 +94,12 @@ public class Student {
     public void setFaculty(Faculty faculty) {
         this.faculty = faculty;
     }
+
+    public StudentSnapshot getPersistedState() {
+        return persistedState;
+    }
+
+    public void setPersistedState(StudentSnapshot persistedState) {
+        this.persistedState = persistedState;
+    }
 }
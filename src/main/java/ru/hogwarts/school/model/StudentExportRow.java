@@ -0,0 +1,10 @@
+package ru.hogwarts.school.model;
+
+public record StudentExportRow(Long id, String name, int age, Long facultyId, String facultyName) {
+
+    public static StudentExportRow of(Student student) {
+        Faculty faculty = student.getFaculty();
+        return new StudentExportRow(student.getId(), student.getName(), student.getAge(),
+                faculty == null ? null : faculty.getId(), faculty == null ? null : faculty.getName());
+    }
+}
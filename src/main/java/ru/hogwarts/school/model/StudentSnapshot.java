@@ -0,0 +1,10 @@
+package ru.hogwarts.school.model;
+
+public record StudentSnapshot(Long id, String name, int age, Long facultyId) {
+
+    public static StudentSnapshot of(Student student) {
+        Faculty faculty = student.getFaculty();
+        return new StudentSnapshot(student.getId(), student.getName(), student.getAge(),
+                faculty == null ? null : faculty.getId());
+    }
+}
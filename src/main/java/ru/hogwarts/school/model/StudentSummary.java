@@ -0,0 +1,4 @@
+package ru.hogwarts.school.model;
+
+public record StudentSummary(Long id, String name, int age) {
+}
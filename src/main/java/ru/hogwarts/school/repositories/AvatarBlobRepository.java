@@ -0,0 +1,15 @@
+package ru.hogwarts.school.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import ru.hogwarts.school.model.AvatarBlob;
+
+import java.util.Collection;
+
+public interface AvatarBlobRepository extends JpaRepository<AvatarBlob, Long> {
+
+    @Modifying
+    @Query("DELETE FROM AvatarBlob b WHERE b.avatarId IN :avatarIds")
+    int deleteAllByAvatarIdIn(Collection<Long> avatarIds);
+}
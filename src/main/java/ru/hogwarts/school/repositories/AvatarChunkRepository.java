@@ -0,0 +1,26 @@
+package ru.hogwarts.school.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import ru.hogwarts.school.model.AvatarChunk;
+import ru.hogwarts.school.model.AvatarChunkId;
+import ru.hogwarts.school.model.AvatarChunkStats;
+
+import java.util.Optional;
+
+public interface AvatarChunkRepository extends JpaRepository<AvatarChunk, AvatarChunkId> {
+
+    boolean existsByContentKeyAndSeq(String contentKey, int seq);
+
+    @Query("SELECT new ru.hogwarts.school.model.AvatarChunkStats(COUNT(c), SUM(c.length)) " +
+            "FROM AvatarChunk c WHERE c.contentKey = :contentKey")
+    AvatarChunkStats findStats(String contentKey);
+
+    @Query("SELECT c.data FROM AvatarChunk c WHERE c.contentKey = :contentKey AND c.seq = :seq")
+    Optional<byte[]> findData(String contentKey, int seq);
+
+    @Modifying
+    @Query("DELETE FROM AvatarChunk c WHERE c.contentKey = :contentKey")
+    int deleteByContentKey(String contentKey);
+}
@@ -0,0 +1,21 @@
+package ru.hogwarts.school.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import ru.hogwarts.school.model.AvatarContent;
+
+public interface AvatarContentRepository extends JpaRepository<AvatarContent, String> {
+
+    @Modifying
+    @Query("UPDATE AvatarContent c SET c.refCount = c.refCount + 1 WHERE c.hash = :hash")
+    int incrementRefCount(String hash);
+
+    @Modifying
+    @Query("UPDATE AvatarContent c SET c.refCount = c.refCount - 1 WHERE c.hash = :hash AND c.refCount > 0")
+    int decrementRefCount(String hash);
+
+    @Modifying
+    @Query("DELETE FROM AvatarContent c WHERE c.hash = :hash AND c.refCount = 0")
+    int deleteUnreferenced(String hash);
+}
@@ -1,18 +1,46 @@
 package ru.hogwarts.school.repositories;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.model.AvatarFileRef;
+import ru.hogwarts.school.model.AvatarSummary;
 
 public interface AvatarRepository extends JpaRepository<Avatar, Long> {
 
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<Avatar> findByStudentId(Long studentId);
 
+    List<Avatar> findAllByStudentIdIn(Collection<Long> studentIds);
+
     Page<Avatar> findAll(Pageable pageable);
 
+    @Query("SELECT new ru.hogwarts.school.model.AvatarSummary(a.id, a.student.id, a.fileSize, a.mediaType) " +
+            "FROM Avatar a WHERE a.id > :afterId ORDER BY a.id")
+    Slice<AvatarSummary> findSummariesAfter(Long afterId, Pageable pageable);
+
+    @Query("SELECT new ru.hogwarts.school.model.AvatarFileRef(a.id, a.filePath) " +
+            "FROM Avatar a WHERE a.id > :afterId AND a.filePath IS NOT NULL ORDER BY a.id")
+    Slice<AvatarFileRef> findFileRefsAfter(Long afterId, Pageable pageable);
+
+    @Query("SELECT a FROM Avatar a WHERE a.id > :afterId AND a.student IS NULL ORDER BY a.id")
+    Slice<Avatar> findDetachedAfter(Long afterId, Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE Avatar a SET a.contentHash = :contentHash WHERE a.id = :id AND a.contentHash IS NULL")
+    int attachContentIfAbsent(Long id, String contentHash);
+
 }
 
 
@@ -0,0 +1,24 @@
+package ru.hogwarts.school.repositories;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import ru.hogwarts.school.model.ChangeEvent;
+
+import java.time.Instant;
+
+public interface ChangeEventRepository extends JpaRepository<ChangeEvent, Long> {
+    Slice<ChangeEvent> findByIdGreaterThanOrderById(Long afterId, Pageable pageable);
+
+    @Query("SELECT MIN(e.id) FROM ChangeEvent e")
+    Long findMinId();
+
+    @Query("SELECT MAX(e.id) FROM ChangeEvent e")
+    Long findMaxId();
+
+    @Modifying
+    @Query("DELETE FROM ChangeEvent e WHERE e.createdAt < :before")
+    int deleteCreatedBefore(Instant before);
+}
@@ -1,12 +1,29 @@
 package ru.hogwarts.school.repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.FacultyStats;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface FacultyRepository extends JpaRepository<Faculty, Long> {
+    String FACULTY_STATS_SELECT = "SELECT new ru.hogwarts.school.model.FacultyStats(f.id, f.name, COUNT(s.id), " +
+            "MIN(s.age), MAX(s.age), AVG(s.age), COUNT(a.id)) " +
+            "FROM Faculty f LEFT JOIN f.students s LEFT JOIN Avatar a ON a.student = s ";
+
     List<Faculty> findByColor(String color);
 
     List<Faculty> findByNameContainingIgnoreCaseOrColorContainingIgnoreCase(String name, String color);
-}
\ No newline at end of file
+
+    @Query(FACULTY_STATS_SELECT + "GROUP BY f.id, f.name")
+    List<FacultyStats> findAllStats();
+
+    @Query(FACULTY_STATS_SELECT + "WHERE f.id IN :facultyIds GROUP BY f.id, f.name")
+    List<FacultyStats> findStatsByFacultyIdIn(Collection<Long> facultyIds);
+
+    @Query(FACULTY_STATS_SELECT + "WHERE f.id IN (SELECT st.faculty.id FROM Student st WHERE st.id IN :studentIds) " +
+            "GROUP BY f.id, f.name")
+    List<FacultyStats> findStatsByStudentIdIn(Collection<Long> studentIds);
+}
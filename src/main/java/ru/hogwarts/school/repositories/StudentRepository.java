@@ -1,26 +1,80 @@
 package ru.hogwarts.school.repositories;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.hibernate.jpa.SpecHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import ru.hogwarts.school.model.AgeCount;
 import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.model.StudentAge;
+import ru.hogwarts.school.model.StudentName;
+import ru.hogwarts.school.model.StudentSnapshot;
+import ru.hogwarts.school.model.StudentSummary;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface StudentRepository extends JpaRepository<Student, Long> {
     List<Student> findByAge(int age);
 
     List<Student> findByAgeBetween(int min, int max);
 
+    @EntityGraph(attributePaths = "faculty")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<Student> findAllByAge(int age);
 
+    @EntityGraph(attributePaths = "faculty")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    Optional<Student> findWithFacultyById(Long id);
+
+    @EntityGraph(attributePaths = "faculty")
+    List<Student> findAllWithFacultyByIdIn(Collection<Long> ids);
+
     @Query("SELECT COUNT(s) FROM Student s")
     Integer getTotalCountOfStudents();
 
     @Query("SELECT AVG(s.age) FROM Student s")
     Double getAverageAgeOfStudents();
 
-    @Query("SELECT s FROM Student s ORDER BY s.id DESC LIMIT 5")
-    List<Student> findLastFiveStudents();
+    @Query("SELECT new ru.hogwarts.school.model.AgeCount(s.age, COUNT(s)) FROM Student s GROUP BY s.age")
+    List<AgeCount> countByAge();
+
+    @Query("SELECT new ru.hogwarts.school.model.StudentSummary(s.id, s.name, s.age) FROM Student s " +
+            "WHERE s.faculty.id = :facultyId AND s.id > :afterId ORDER BY s.id")
+    Slice<StudentSummary> findSummariesByFacultyAfter(Long facultyId, Long afterId, Pageable pageable);
+
+    @Query("SELECT new ru.hogwarts.school.model.StudentAge(s.id, s.age) FROM Student s " +
+            "WHERE s.id > :afterId ORDER BY s.id")
+    Slice<StudentAge> findAgesAfter(Long afterId, Pageable pageable);
+
+    @Query("SELECT new ru.hogwarts.school.model.StudentName(s.id, s.name) FROM Student s " +
+            "WHERE s.id > :afterId ORDER BY s.id")
+    Slice<StudentName> findNamesAfter(Long afterId, Pageable pageable);
+
+    @Query("SELECT new ru.hogwarts.school.model.StudentSnapshot(s.id, s.name, s.age, s.faculty.id) " +
+            "FROM Student s ORDER BY s.id DESC")
+    List<StudentSnapshot> findRecentSnapshots(Limit limit);
+
+    @Query("SELECT s.name FROM Student s WHERE UPPER(s.name) LIKE :pattern ESCAPE '!' " +
+            "ORDER BY UPPER(s.name), s.name")
+    List<String> findNamesByUpperNameLike(String pattern, Limit limit);
 
+    // exports read every row once, so they neither consult nor fill the second-level cache
+    @Query("SELECT s FROM Student s LEFT JOIN FETCH s.faculty ORDER BY s.id")
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = SpecHints.HINT_SPEC_CACHE_RETRIEVE_MODE, value = "BYPASS"),
+            @QueryHint(name = SpecHints.HINT_SPEC_CACHE_STORE_MODE, value = "BYPASS")
+    })
+    Stream<Student> streamAllWithFaculty();
 
 }
@@ -0,0 +1,209 @@
+package ru.hogwarts.school.service;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+@Component
+public class AvatarByteCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(AvatarByteCache.class);
+
+    private static final MethodHandle INVOKE_CLEANER = findCleaner();
+
+    private final long maxBytes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final AtomicLong invalidations = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private long usedBytes;
+
+    public AvatarByteCache(@Value("${avatars.cache.max-bytes:67108864}") long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    public Optional<CachedAvatar> get(Long studentId, String contentHash) {
+        if (!isEnabled()) {
+            return Optional.empty();
+        }
+        lock.lock();
+        try {
+            Entry entry = entries.get(studentId);
+            if (entry != null && (contentHash == null || contentHash.equals(entry.contentHash)) && entry.retain()) {
+                hits.increment();
+                return Optional.of(entry.lease());
+            }
+        } finally {
+            lock.unlock();
+        }
+        misses.increment();
+        return Optional.empty();
+    }
+
+    // avatars that do not fit into the budget are not read into direct memory at all
+    public Optional<CachedAvatar> load(Long studentId, String mediaType, String contentHash,
+                                       Resource resource) throws IOException {
+        long token = invalidations.get();
+        long length = resource.contentLength();
+        if (!isEnabled() || length > maxBytes || length > Integer.MAX_VALUE) {
+            return Optional.empty();
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) length);
+        try (ReadableByteChannel channel = resource.readableChannel()) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    break;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            free(buffer);
+            throw e;
+        }
+        buffer.flip();
+        Entry entry = new Entry(mediaType, contentHash, buffer);
+        put(token, studentId, entry);
+        return Optional.of(entry.lease());
+    }
+
+    public void invalidate(Long studentId) {
+        lock.lock();
+        try {
+            invalidations.incrementAndGet();
+            Entry removed = entries.remove(studentId);
+            if (removed != null) {
+                usedBytes -= removed.size();
+                removed.release();
+                logger.debug("Invalidated cached avatar of student {}", studentId);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public AvatarCacheStats stats() {
+        lock.lock();
+        try {
+            return new AvatarCacheStats(hits.sum(), misses.sum(), evictions.sum(), entries.size(),
+                    usedBytes, maxBytes);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void put(long token, Long studentId, Entry entry) {
+        lock.lock();
+        try {
+            if (invalidations.get() != token) {
+                logger.debug("Skipping stale cache load for avatar of student {}", studentId);
+                return;
+            }
+            entry.retain();
+            Entry previous = entries.put(studentId, entry);
+            if (previous != null) {
+                usedBytes -= previous.size();
+                previous.release();
+            }
+            usedBytes += entry.size();
+
+            Iterator<Map.Entry<Long, Entry>> eldest = entries.entrySet().iterator();
+            while (usedBytes > maxBytes && eldest.hasNext()) {
+                Entry evicted = eldest.next().getValue();
+                usedBytes -= evicted.size();
+                eldest.remove();
+                evicted.release();
+                evictions.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void free(ByteBuffer buffer) {
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invokeExact(buffer);
+        } catch (Throwable e) {
+            logger.warn("Could not free cached avatar buffer: {}", e.getMessage());
+        }
+    }
+
+    private static MethodHandle findCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(field.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.warn("Evicted avatar buffers will be freed by the garbage collector: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    // starts with the reference of the reader that loaded it; the cache takes its own when it stores the entry
+    private static final class Entry {
+
+        private final String mediaType;
+        private final String contentHash;
+        private final ByteBuffer buffer;
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        Entry(String mediaType, String contentHash, ByteBuffer buffer) {
+            this.mediaType = mediaType;
+            this.contentHash = contentHash;
+            this.buffer = buffer;
+        }
+
+        int size() {
+            return buffer.capacity();
+        }
+
+        boolean retain() {
+            int current;
+            do {
+                current = references.get();
+                if (current == 0) {
+                    return false;
+                }
+            } while (!references.compareAndSet(current, current + 1));
+            return true;
+        }
+
+        void release() {
+            if (references.decrementAndGet() == 0) {
+                free(buffer);
+            }
+        }
+
+        CachedAvatar lease() {
+            return new CachedAvatar(mediaType, contentHash, buffer, this::release);
+        }
+    }
+}
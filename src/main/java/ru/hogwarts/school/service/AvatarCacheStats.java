@@ -0,0 +1,5 @@
+package ru.hogwarts.school.service;
+
+public record AvatarCacheStats(long hits, long misses, long evictions, int entries,
+                               long usedBytes, long maxBytes) {
+}
@@ -0,0 +1,142 @@
+package ru.hogwarts.school.service;
+
+import java.io.IOException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.model.AvatarContent;
+import ru.hogwarts.school.repositories.AvatarContentRepository;
+
+@Service
+public class AvatarContentService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AvatarContentService.class);
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final AvatarContentRepository avatarContentRepository;
+    private final AvatarFileStore avatarFileStore;
+    private final AvatarThumbnailService avatarThumbnailService;
+    private final TransactionTemplate transactionTemplate;
+    private final Lock[] locks = new Lock[LOCK_STRIPES];
+
+    public AvatarContentService(AvatarContentRepository avatarContentRepository,
+                                AvatarFileStore avatarFileStore,
+                                AvatarThumbnailService avatarThumbnailService,
+                                PlatformTransactionManager transactionManager) {
+        this.avatarContentRepository = avatarContentRepository;
+        this.avatarFileStore = avatarFileStore;
+        this.avatarThumbnailService = avatarThumbnailService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    public StoredAvatarContent store(InputStreamSource source) throws IOException {
+        StagedAvatarContent staged = avatarFileStore.stage(source);
+        String contentHash = staged.contentHash();
+
+        Lock lock = lockFor(contentHash);
+        lock.lock();
+        try {
+            StoredAvatarContent stored;
+            if (avatarFileStore.exists(contentHash)) {
+                logger.debug("Avatar content {} is already stored, discarding upload", contentHash);
+                stored = new StoredAvatarContent(contentHash, staged.size());
+            } else {
+                stored = avatarFileStore.commit(staged);
+            }
+            acquire(contentHash, stored.size());
+            return stored;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // the reference taken by store() is committed on its own, so a caller whose transaction rolls back gives it back
+    public void releaseOnRollback(String contentHash) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    logger.debug("Releasing avatar content {} after rollback", contentHash);
+                    release(contentHash);
+                }
+            }
+        });
+    }
+
+    public void releaseAfterCommit(String contentHash) {
+        if (contentHash == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            release(contentHash);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                release(contentHash);
+            }
+        });
+    }
+
+    public void release(String contentHash) {
+        if (contentHash == null) {
+            return;
+        }
+        Lock lock = lockFor(contentHash);
+        lock.lock();
+        try {
+            Boolean unreferenced = transactionTemplate.execute(status -> {
+                if (avatarContentRepository.decrementRefCount(contentHash) == 0) {
+                    return false;
+                }
+                return avatarContentRepository.deleteUnreferenced(contentHash) > 0;
+            });
+            if (Boolean.TRUE.equals(unreferenced)) {
+                avatarFileStore.delete(contentHash);
+                avatarThumbnailService.deleteAll(contentHash);
+            }
+        } catch (IOException e) {
+            logger.error("Could not delete unreferenced avatar content {}: {}", contentHash, e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void acquire(String contentHash, long size) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> doAcquire(contentHash, size));
+        } catch (DataIntegrityViolationException e) {
+            logger.debug("Avatar content {} was registered concurrently, retrying", contentHash);
+            transactionTemplate.executeWithoutResult(status -> doAcquire(contentHash, size));
+        }
+    }
+
+    private void doAcquire(String contentHash, long size) {
+        if (avatarContentRepository.incrementRefCount(contentHash) == 0) {
+            avatarContentRepository.saveAndFlush(new AvatarContent(contentHash, size, 1));
+        }
+    }
+
+    Lock lockFor(String contentHash) {
+        return locks[Math.floorMod(contentHash.hashCode(), LOCK_STRIPES)];
+    }
+}
@@ -0,0 +1,77 @@
+package ru.hogwarts.school.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.stereotype.Component;
+import ru.hogwarts.school.storage.AvatarStorage;
+
+@Component
+public class AvatarFileStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(AvatarFileStore.class);
+
+    private final AvatarStorage avatarStorage;
+    private final Path avatarsDir;
+    private final long maxSize;
+
+    public AvatarFileStore(AvatarStorage avatarStorage,
+                           @Value("${avatars.dir.path}") String avatarsDir,
+                           @Value("${avatars.max.size:307200}") long maxSize) {
+        this.avatarStorage = avatarStorage;
+        this.avatarsDir = Path.of(avatarsDir);
+        this.maxSize = maxSize;
+    }
+
+    public boolean exists(String contentHash) throws IOException {
+        return avatarStorage.exists(contentHash);
+    }
+
+    // avatars are capped at maxSize, so an upload is hashed in memory and only content not stored yet reaches the disk
+    public StagedAvatarContent stage(InputStreamSource source) throws IOException {
+        byte[] data;
+        try (InputStream in = source.getInputStream()) {
+            data = in.readNBytes(Math.toIntExact(maxSize) + 1);
+        }
+        if (data.length > maxSize) {
+            throw new AvatarTooLargeException(maxSize);
+        }
+        MessageDigest digest = newDigest();
+        return new StagedAvatarContent(data, HexFormat.of().formatHex(digest.digest(data)), data.length);
+    }
+
+    public StoredAvatarContent commit(StagedAvatarContent staged) throws IOException {
+        Files.createDirectories(avatarsDir);
+        Path tempFile = Files.createTempFile(avatarsDir, "upload-", ".tmp");
+        try {
+            Files.write(tempFile, staged.data());
+            avatarStorage.put(staged.contentHash(), tempFile);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        logger.debug("Stored avatar content {} ({} bytes)", staged.contentHash(), staged.size());
+        return new StoredAvatarContent(staged.contentHash(), staged.size());
+    }
+
+    public void delete(String contentHash) throws IOException {
+        avatarStorage.delete(contentHash);
+        logger.debug("Deleted unreferenced avatar content {}", contentHash);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
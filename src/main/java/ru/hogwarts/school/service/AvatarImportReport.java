@@ -0,0 +1,6 @@
+package ru.hogwarts.school.service;
+
+import java.util.List;
+
+public record AvatarImportReport(int imported, int failed, List<AvatarImportResult> results) {
+}
@@ -0,0 +1,17 @@
+package ru.hogwarts.school.service;
+
+public record AvatarImportResult(String entry, Long studentId, Status status, String message) {
+
+    public enum Status {
+        IMPORTED,
+        FAILED
+    }
+
+    static AvatarImportResult imported(String entry, Long studentId) {
+        return new AvatarImportResult(entry, studentId, Status.IMPORTED, null);
+    }
+
+    static AvatarImportResult failed(String entry, Long studentId, String message) {
+        return new AvatarImportResult(entry, studentId, Status.FAILED, message);
+    }
+}
@@ -0,0 +1,298 @@
+package ru.hogwarts.school.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repositories.AvatarBlobRepository;
+import ru.hogwarts.school.repositories.AvatarRepository;
+import ru.hogwarts.school.repositories.StudentRepository;
+
+@Service
+public class AvatarImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AvatarImportService.class);
+
+    private final AvatarContentService avatarContentService;
+    private final AvatarThumbnailService avatarThumbnailService;
+    private final AvatarByteCache avatarByteCache;
+    private final StudentRepository studentRepository;
+    private final AvatarRepository avatarRepository;
+    private final AvatarBlobRepository avatarBlobRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final long maxSize;
+    private final int maxEntries;
+    private final int maxInFlight;
+    private final ExecutorService executor;
+
+    public AvatarImportService(AvatarContentService avatarContentService,
+                               AvatarThumbnailService avatarThumbnailService,
+                               AvatarByteCache avatarByteCache,
+                               StudentRepository studentRepository,
+                               AvatarRepository avatarRepository,
+                               AvatarBlobRepository avatarBlobRepository,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${avatars.max.size:307200}") long maxSize,
+                               @Value("${avatars.import.max-entries:10000}") int maxEntries,
+                               @Value("${avatars.import.threads:8}") int threads) {
+        this.avatarContentService = avatarContentService;
+        this.avatarThumbnailService = avatarThumbnailService;
+        this.avatarByteCache = avatarByteCache;
+        this.studentRepository = studentRepository;
+        this.avatarRepository = avatarRepository;
+        this.avatarBlobRepository = avatarBlobRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxSize = maxSize;
+        this.maxEntries = maxEntries;
+        this.maxInFlight = threads * 4;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "avatar-import-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public AvatarImportReport importArchive(InputStream archive) throws IOException {
+        logger.info("Was invoked method for bulk avatar import");
+        long startTime = System.currentTimeMillis();
+
+        List<AvatarImportResult> results = new ArrayList<>();
+        List<PendingEntry> pending = new ArrayList<>();
+        Semaphore inFlight = new Semaphore(maxInFlight);
+
+        try (ZipInputStream zip = new ZipInputStream(archive)) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                String name = entry.getName();
+                int index = results.size();
+                results.add(null);
+                if (index >= maxEntries) {
+                    results.set(index, AvatarImportResult.failed(name, null,
+                            "Archive has more than " + maxEntries + " entries"));
+                    break;
+                }
+
+                Long studentId = parseStudentId(name);
+                if (studentId == null) {
+                    results.set(index, AvatarImportResult.failed(name, null,
+                            "Entry name must be <studentId>.<extension>"));
+                    continue;
+                }
+                byte[] data = readEntry(zip);
+                if (data == null) {
+                    results.set(index, AvatarImportResult.failed(name, studentId, "File is too big"));
+                    continue;
+                }
+
+                acquire(inFlight);
+                Future<StoredAvatarContent> stored = executor.submit(() -> {
+                    try {
+                        return avatarContentService.store(new ByteArrayResource(data));
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+                String mediaType = MediaTypeFactory.getMediaType(name)
+                        .orElse(MediaType.APPLICATION_OCTET_STREAM).toString();
+                pending.add(new PendingEntry(index, name, studentId, mediaType, stored));
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.error("Bulk avatar import aborted: {}", e.getMessage());
+            awaitAll(pending, results);
+            pending.stream()
+                    .filter(entry -> entry.stored != null)
+                    .forEach(entry -> avatarContentService.release(entry.stored.contentHash()));
+            throw e;
+        }
+
+        awaitAll(pending, results);
+        saveMetadata(pending, results);
+
+        int imported = (int) results.stream()
+                .filter(result -> result.status() == AvatarImportResult.Status.IMPORTED)
+                .count();
+        logger.info("Bulk avatar import finished: {} imported, {} failed in {} ms",
+                imported, results.size() - imported, System.currentTimeMillis() - startTime);
+        return new AvatarImportReport(imported, results.size() - imported, results);
+    }
+
+    private void awaitAll(List<PendingEntry> pending, List<AvatarImportResult> results) {
+        for (PendingEntry entry : pending) {
+            try {
+                entry.stored = entry.future.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                String message = cause instanceof AvatarTooLargeException ? "File is too big" : cause.getMessage();
+                logger.warn("Could not store avatar entry {}: {}", entry.name, message);
+                results.set(entry.index, AvatarImportResult.failed(entry.name, entry.studentId, message));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Avatar import was interrupted", e);
+            }
+        }
+    }
+
+    private void saveMetadata(List<PendingEntry> pending, List<AvatarImportResult> results) {
+        Map<Long, PendingEntry> latest = new HashMap<>();
+        List<String> released = new ArrayList<>();
+        for (PendingEntry entry : pending) {
+            if (entry.stored == null) {
+                continue;
+            }
+            PendingEntry superseded = latest.put(entry.studentId, entry);
+            if (superseded != null) {
+                released.add(superseded.stored.contentHash());
+                results.set(superseded.index, AvatarImportResult.failed(superseded.name, superseded.studentId,
+                        "Superseded by entry " + entry.name));
+            }
+        }
+
+        Set<Long> studentIds = new HashSet<>(latest.keySet());
+        if (!studentIds.isEmpty()) {
+            try {
+                saveAvatars(latest, studentIds, released, results);
+            } catch (RuntimeException e) {
+                logger.error("Could not save imported avatar metadata: {}", e.getMessage());
+                latest.values().forEach(entry -> avatarContentService.release(entry.stored.contentHash()));
+                released.forEach(avatarContentService::release);
+                throw e;
+            }
+        }
+
+        for (String contentHash : released) {
+            avatarContentService.release(contentHash);
+        }
+        for (PendingEntry entry : latest.values()) {
+            if (results.get(entry.index).status() == AvatarImportResult.Status.IMPORTED) {
+                avatarByteCache.invalidate(entry.studentId);
+                avatarThumbnailService.generateAll(entry.stored.contentHash());
+            }
+        }
+    }
+
+    private void saveAvatars(Map<Long, PendingEntry> latest, Set<Long> studentIds,
+                             List<String> released, List<AvatarImportResult> results) {
+        List<String> replaced = new ArrayList<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<Long, Student> students = studentRepository.findAllById(studentIds).stream()
+                    .collect(Collectors.toMap(Student::getId, Function.identity()));
+            Map<Long, Avatar> avatars = avatarRepository.findAllByStudentIdIn(studentIds).stream()
+                    .collect(Collectors.toMap(avatar -> avatar.getStudent().getId(), Function.identity()));
+
+            List<Avatar> toSave = new ArrayList<>();
+            for (PendingEntry entry : latest.values()) {
+                Student student = students.get(entry.studentId);
+                if (student == null) {
+                    replaced.add(entry.stored.contentHash());
+                    results.set(entry.index, AvatarImportResult.failed(entry.name, entry.studentId,
+                            "Student not found"));
+                    continue;
+                }
+                Avatar avatar = avatars.getOrDefault(entry.studentId, new Avatar());
+                if (avatar.getContentHash() != null) {
+                    replaced.add(avatar.getContentHash());
+                }
+                avatar.setStudent(student);
+                avatar.setFilePath(null);
+                avatar.setFileSize(entry.stored.size());
+                avatar.setContentHash(entry.stored.contentHash());
+                avatar.setMediaType(entry.mediaType);
+                toSave.add(avatar);
+                results.set(entry.index, AvatarImportResult.imported(entry.name, entry.studentId));
+            }
+
+            List<Avatar> saved = avatarRepository.saveAll(toSave);
+            avatarBlobRepository.deleteAllByAvatarIdIn(saved.stream().map(Avatar::getId).toList());
+        });
+        released.addAll(replaced);
+    }
+
+    private byte[] readEntry(ZipInputStream zip) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[16 * 1024];
+        int read;
+        while ((read = zip.read(buffer)) != -1) {
+            if (out.size() + read > maxSize) {
+                return null;
+            }
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static Long parseStudentId(String entryName) {
+        String fileName = entryName.substring(entryName.lastIndexOf('/') + 1);
+        int dot = fileName.indexOf('.');
+        String id = dot < 0 ? fileName : fileName.substring(0, dot);
+        try {
+            long studentId = Long.parseLong(id);
+            return studentId > 0 ? studentId : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void acquire(Semaphore semaphore) {
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Avatar import was interrupted", e);
+        }
+    }
+
+    private static final class PendingEntry {
+        private final int index;
+        private final String name;
+        private final Long studentId;
+        private final String mediaType;
+        private final Future<StoredAvatarContent> future;
+        private StoredAvatarContent stored;
+
+        private PendingEntry(int index, String name, Long studentId, String mediaType,
+                             Future<StoredAvatarContent> future) {
+            this.index = index;
+            this.name = name;
+            this.studentId = studentId;
+            this.mediaType = mediaType;
+            this.future = future;
+        }
+    }
+}
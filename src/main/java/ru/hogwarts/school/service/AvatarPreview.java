@@ -0,0 +1,6 @@
+package ru.hogwarts.school.service;
+
+import org.springframework.core.io.Resource;
+
+public record AvatarPreview(Resource resource, String mediaType) {
+}
@@ -0,0 +1,8 @@
+package ru.hogwarts.school.service;
+
+import java.time.Instant;
+
+public record AvatarReconcileStatus(boolean running, String mode, Instant startedAt, Instant finishedAt,
+                                    long scannedFiles, long scannedRows, long orphanFiles, long orphanRows,
+                                    long reclaimedBytes, String lastError) {
+}
@@ -0,0 +1,377 @@
+package ru.hogwarts.school.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.model.AvatarContent;
+import ru.hogwarts.school.model.AvatarFileRef;
+import ru.hogwarts.school.repositories.AvatarBlobRepository;
+import ru.hogwarts.school.repositories.AvatarContentRepository;
+import ru.hogwarts.school.repositories.AvatarRepository;
+import ru.hogwarts.school.storage.AvatarStorage;
+import ru.hogwarts.school.storage.FileSystemAvatarStorage;
+
+@Service
+public class AvatarReconciler {
+
+    private static final Logger logger = LoggerFactory.getLogger(AvatarReconciler.class);
+
+    private static final Pattern TEMP_FILE = Pattern.compile("(upload|thumbnail|fetch)-.*\\.tmp");
+    private static final Pattern LEGACY_FILE = Pattern.compile("(avatar_\\d+_\\d+|\\d+)(\\.[A-Za-z0-9]+)?");
+    private static final String QUARANTINE_DIR = "quarantine";
+    private static final DateTimeFormatter QUARANTINE_DATE = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final Set<String> MODES = Set.of("dry-run", "quarantine", "delete");
+
+    private final AvatarRepository avatarRepository;
+    private final AvatarBlobRepository avatarBlobRepository;
+    private final AvatarContentRepository avatarContentRepository;
+    private final AvatarContentService avatarContentService;
+    private final AvatarStorage avatarStorage;
+    private final TransactionTemplate transactionTemplate;
+    private final Path avatarsDir;
+    private final Path quarantineDir;
+    private final boolean enabled;
+    private final String mode;
+    private final int batchSize;
+    private final long operationIntervalNanos;
+    private final Duration minAge;
+    private final Duration quarantineRetention;
+    private final ExecutorService executor;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong scannedFiles = new AtomicLong();
+    private final AtomicLong scannedRows = new AtomicLong();
+    private final AtomicLong orphanFiles = new AtomicLong();
+    private final AtomicLong orphanRows = new AtomicLong();
+    private final AtomicLong reclaimedBytes = new AtomicLong();
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String lastError;
+    private long nextOperation;
+
+    public AvatarReconciler(AvatarRepository avatarRepository,
+                            AvatarBlobRepository avatarBlobRepository,
+                            AvatarContentRepository avatarContentRepository,
+                            AvatarContentService avatarContentService,
+                            AvatarStorage avatarStorage,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${avatars.dir.path}") String avatarsDir,
+                            @Value("${avatars.reconciler.enabled:false}") boolean enabled,
+                            @Value("${avatars.reconciler.mode:dry-run}") String mode,
+                            @Value("${avatars.reconciler.batch-size:500}") int batchSize,
+                            @Value("${avatars.reconciler.max-operations-per-second:200}") int maxOperationsPerSecond,
+                            @Value("${avatars.reconciler.min-age:PT1H}") Duration minAge,
+                            @Value("${avatars.reconciler.quarantine-retention:P7D}") Duration quarantineRetention) {
+        if (!MODES.contains(mode)) {
+            throw new IllegalArgumentException("Unknown avatar reconciler mode: " + mode);
+        }
+        this.avatarRepository = avatarRepository;
+        this.avatarBlobRepository = avatarBlobRepository;
+        this.avatarContentRepository = avatarContentRepository;
+        this.avatarContentService = avatarContentService;
+        this.avatarStorage = avatarStorage;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.avatarsDir = Path.of(avatarsDir).toAbsolutePath().normalize();
+        this.quarantineDir = this.avatarsDir.resolve(QUARANTINE_DIR);
+        this.enabled = enabled;
+        this.mode = mode;
+        this.batchSize = batchSize;
+        this.operationIntervalNanos = maxOperationsPerSecond > 0 ? 1_000_000_000L / maxOperationsPerSecond : 0;
+        this.minAge = minAge;
+        this.quarantineRetention = quarantineRetention;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "avatar-reconciler");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Scheduled(initialDelayString = "${avatars.reconciler.initial-delay:PT5M}",
+            fixedDelayString = "${avatars.reconciler.interval:PT1H}")
+    public void scheduledRun() {
+        if (enabled) {
+            start();
+        }
+    }
+
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        startedAt = Instant.now();
+        finishedAt = null;
+        lastError = null;
+        scannedFiles.set(0);
+        scannedRows.set(0);
+        orphanFiles.set(0);
+        orphanRows.set(0);
+        reclaimedBytes.set(0);
+        executor.execute(this::run);
+        return true;
+    }
+
+    public AvatarReconcileStatus status() {
+        return new AvatarReconcileStatus(running.get(), mode, startedAt, finishedAt,
+                scannedFiles.get(), scannedRows.get(), orphanFiles.get(), orphanRows.get(),
+                reclaimedBytes.get(), lastError);
+    }
+
+    private void run() {
+        logger.info("Avatar reconciliation started in {} mode", mode);
+        try {
+            reconcileDetachedAvatars();
+            reconcileLegacyFiles();
+            if (avatarStorage instanceof FileSystemAvatarStorage fileSystemStorage) {
+                reconcileContentFiles(fileSystemStorage.getRoot().toAbsolutePath().normalize());
+            }
+            if (!isDryRun()) {
+                purgeQuarantine();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            lastError = "Interrupted";
+        } catch (IOException | RuntimeException e) {
+            lastError = e.getMessage();
+            logger.error("Avatar reconciliation failed: {}", e.getMessage());
+        } finally {
+            finishedAt = Instant.now();
+            running.set(false);
+        }
+        logger.info("Avatar reconciliation finished: {} files and {} rows scanned, {} orphan files, "
+                        + "{} orphan rows, {} bytes reclaimed", scannedFiles.get(), scannedRows.get(),
+                orphanFiles.get(), orphanRows.get(), reclaimedBytes.get());
+    }
+
+    private void reconcileDetachedAvatars() throws InterruptedException {
+        long cursor = 0;
+        Slice<Avatar> slice;
+        do {
+            slice = avatarRepository.findDetachedAfter(cursor, PageRequest.of(0, batchSize));
+            for (Avatar avatar : slice) {
+                pace();
+                scannedRows.incrementAndGet();
+                cursor = avatar.getId();
+                orphanRows.incrementAndGet();
+                if (isDryRun()) {
+                    logger.debug("Would remove avatar {} that belongs to no student", avatar.getId());
+                    continue;
+                }
+                transactionTemplate.executeWithoutResult(status -> {
+                    avatarBlobRepository.deleteAllByAvatarIdIn(List.of(avatar.getId()));
+                    avatarRepository.deleteById(avatar.getId());
+                });
+                avatarContentService.release(avatar.getContentHash());
+                logger.debug("Removed avatar {} that belongs to no student", avatar.getId());
+            }
+        } while (slice.hasNext());
+    }
+
+    private void reconcileLegacyFiles() throws IOException, InterruptedException {
+        if (!Files.isDirectory(avatarsDir)) {
+            return;
+        }
+        Set<Path> referenced = new HashSet<>();
+        long cursor = 0;
+        Slice<AvatarFileRef> slice;
+        do {
+            slice = avatarRepository.findFileRefsAfter(cursor, PageRequest.of(0, batchSize));
+            for (AvatarFileRef ref : slice) {
+                scannedRows.incrementAndGet();
+                cursor = ref.id();
+                referenced.add(Path.of(ref.filePath()).toAbsolutePath().normalize());
+            }
+        } while (slice.hasNext());
+        // without any file references an empty or unreachable table would make every legacy file look orphaned
+        boolean legacyOrphans = !referenced.isEmpty();
+        if (!legacyOrphans) {
+            logger.info("No avatar rows reference legacy files, only temporary files in {} will be reclaimed",
+                    avatarsDir);
+        }
+
+        try (Stream<Path> files = Files.list(avatarsDir)) {
+            Iterator<Path> iterator = files.iterator();
+            while (iterator.hasNext()) {
+                Path path = iterator.next();
+                pace();
+                String name = path.getFileName().toString();
+                if (!Files.isRegularFile(path)) {
+                    continue;
+                }
+                scannedFiles.incrementAndGet();
+                boolean orphan = TEMP_FILE.matcher(name).matches()
+                        || (legacyOrphans && LEGACY_FILE.matcher(name).matches() && !referenced.contains(path));
+                if (orphan && isOldEnough(path)) {
+                    reclaim(path);
+                }
+            }
+        }
+    }
+
+    private void reconcileContentFiles(Path contentRoot) throws IOException, InterruptedException {
+        if (!Files.isDirectory(contentRoot)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(contentRoot, 2)) {
+            Iterator<Path> iterator = files.filter(path -> path.getNameCount() == contentRoot.getNameCount() + 2)
+                    .iterator();
+            List<Path> batch = new ArrayList<>(batchSize);
+            while (iterator.hasNext()) {
+                batch.add(iterator.next());
+                if (batch.size() == batchSize || !iterator.hasNext()) {
+                    reconcileContentBatch(batch);
+                    batch.clear();
+                }
+            }
+        }
+    }
+
+    private void reconcileContentBatch(List<Path> batch) throws IOException, InterruptedException {
+        Set<String> hashes = batch.stream()
+                .map(AvatarReconciler::contentHash)
+                .collect(Collectors.toSet());
+        Set<String> known = avatarContentRepository.findAllById(hashes).stream()
+                .map(AvatarContent::getHash)
+                .collect(Collectors.toSet());
+        for (Path path : batch) {
+            pace();
+            if (!Files.isRegularFile(path)) {
+                continue;
+            }
+            scannedFiles.incrementAndGet();
+            String contentHash = contentHash(path);
+            if (known.contains(contentHash) || !isOldEnough(path)) {
+                continue;
+            }
+            Lock lock = avatarContentService.lockFor(contentHash);
+            lock.lock();
+            try {
+                if (!avatarContentRepository.existsById(contentHash)) {
+                    reclaim(path);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void purgeQuarantine() throws IOException, InterruptedException {
+        if (!Files.isDirectory(quarantineDir)) {
+            return;
+        }
+        LocalDate oldestKept = LocalDate.now().minusDays(quarantineRetention.toDays());
+        try (Stream<Path> dirs = Files.list(quarantineDir)) {
+            for (Path dir : dirs.filter(Files::isDirectory).toList()) {
+                LocalDate date;
+                try {
+                    date = LocalDate.parse(dir.getFileName().toString(), QUARANTINE_DATE);
+                } catch (RuntimeException e) {
+                    continue;
+                }
+                if (!date.isBefore(oldestKept)) {
+                    continue;
+                }
+                try (Stream<Path> files = Files.list(dir)) {
+                    for (Path file : files.toList()) {
+                        pace();
+                        Files.deleteIfExists(file);
+                    }
+                }
+                Files.deleteIfExists(dir);
+                logger.info("Purged avatar quarantine {}", dir);
+            }
+        }
+    }
+
+    private void reclaim(Path path) throws IOException {
+        long size;
+        try {
+            size = Files.size(path);
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        orphanFiles.incrementAndGet();
+        reclaimedBytes.addAndGet(size);
+        if (isDryRun()) {
+            logger.debug("Would reclaim orphan avatar file {}", path);
+        } else if (mode.equals("quarantine")) {
+            Path dir = quarantineDir.resolve(LocalDate.now().format(QUARANTINE_DATE));
+            Files.createDirectories(dir);
+            String name = avatarsDir.relativize(path).toString().replace(path.getFileSystem().getSeparator(), "_");
+            Files.move(path, dir.resolve(name), StandardCopyOption.REPLACE_EXISTING);
+            logger.debug("Quarantined orphan avatar file {}", path);
+        } else {
+            Files.deleteIfExists(path);
+            logger.debug("Deleted orphan avatar file {}", path);
+        }
+    }
+
+    private boolean isDryRun() {
+        return mode.equals("dry-run");
+    }
+
+    private boolean isOldEnough(Path path) throws IOException {
+        try {
+            Instant modified = Files.readAttributes(path, BasicFileAttributes.class).lastModifiedTime().toInstant();
+            return modified.isBefore(Instant.now().minus(minAge));
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    private void pace() throws InterruptedException {
+        if (operationIntervalNanos == 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (nextOperation - now > 0) {
+            TimeUnit.NANOSECONDS.sleep(nextOperation - now);
+            now = nextOperation;
+        }
+        nextOperation = now + operationIntervalNanos;
+    }
+
+    private static String contentHash(Path path) {
+        String name = path.getFileName().toString();
+        int dot = name.indexOf('.');
+        return dot < 0 ? name : name.substring(0, dot);
+    }
+}
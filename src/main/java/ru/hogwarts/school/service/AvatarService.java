@@ -1,68 +1,237 @@
 package ru.hogwarts.school.service;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.model.AvatarBlob;
+import ru.hogwarts.school.model.AvatarSlice;
+import ru.hogwarts.school.model.AvatarSummary;
 import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repositories.AvatarBlobRepository;
 import ru.hogwarts.school.repositories.AvatarRepository;
 import ru.hogwarts.school.repositories.StudentRepository;
+import ru.hogwarts.school.storage.AvatarStorage;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.List;
 import java.util.Optional;
 
 @Service
 public class AvatarService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AvatarService.class);
+
     private final AvatarRepository avatarRepository;
     private final StudentRepository studentRepository;
+    private final AvatarBlobRepository avatarBlobRepository;
+    private final AvatarContentService avatarContentService;
+    private final AvatarThumbnailService avatarThumbnailService;
+    private final AvatarByteCache avatarByteCache;
+    private final AvatarStorage avatarStorage;
+    private final TransactionTemplate transactionTemplate;
 
-    public AvatarService(AvatarRepository avatarRepository, StudentRepository studentRepository) {
+    public AvatarService(AvatarRepository avatarRepository, StudentRepository studentRepository,
+                         AvatarBlobRepository avatarBlobRepository, AvatarContentService avatarContentService,
+                         AvatarThumbnailService avatarThumbnailService, AvatarByteCache avatarByteCache,
+                         AvatarStorage avatarStorage, PlatformTransactionManager transactionManager) {
         this.avatarRepository = avatarRepository;
         this.studentRepository = studentRepository;
+        this.avatarBlobRepository = avatarBlobRepository;
+        this.avatarContentService = avatarContentService;
+        this.avatarThumbnailService = avatarThumbnailService;
+        this.avatarByteCache = avatarByteCache;
+        this.avatarStorage = avatarStorage;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     public Optional<Avatar> findAvatarByStudentId(Long id) {
         return avatarRepository.findByStudentId(id);
     }
 
+    public Optional<Resource> findAvatarData(Avatar avatar) throws IOException {
+        if (avatar.getContentHash() != null) {
+            Optional<Resource> content = avatarStorage.find(avatar.getContentHash());
+            if (content.isPresent()) {
+                return content;
+            }
+        }
+        if (avatar.getFilePath() != null) {
+            Path path = Path.of(avatar.getFilePath());
+            if (Files.isRegularFile(path)) {
+                return Optional.of(new FileSystemResource(path));
+            }
+        }
+        if (avatar.getId() == null) {
+            return Optional.empty();
+        }
+        Optional<String> migrated = migrateLegacyBlob(avatar.getId());
+        if (migrated.isEmpty()) {
+            return Optional.empty();
+        }
+        avatar.setContentHash(migrated.get());
+        return avatarStorage.find(migrated.get());
+    }
+
+    // a legacy blob is streamed into the content storage on its first read and dropped,
+    // so later reads are served like any other upload instead of loading the whole blob into the heap
+    private Optional<String> migrateLegacyBlob(Long avatarId) throws IOException {
+        try {
+            return transactionTemplate.execute(status -> {
+                Optional<AvatarBlob> blob = avatarBlobRepository.findById(avatarId);
+                if (blob.isEmpty() || blob.get().getData() == null) {
+                    return Optional.empty();
+                }
+                StoredAvatarContent stored = storeBlob(blob.get());
+                avatarContentService.releaseOnRollback(stored.contentHash());
+                if (avatarRepository.attachContentIfAbsent(avatarId, stored.contentHash()) == 0) {
+                    // a concurrent read has already moved the same blob
+                    avatarContentService.releaseAfterCommit(stored.contentHash());
+                }
+                avatarBlobRepository.deleteAllByAvatarIdIn(List.of(avatarId));
+                logger.info("Moved legacy avatar {} into content {}", avatarId, stored.contentHash());
+                return Optional.of(stored.contentHash());
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private StoredAvatarContent storeBlob(AvatarBlob blob) {
+        try {
+            return avatarContentService.store(() -> {
+                try {
+                    return blob.getData().getBinaryStream();
+                } catch (SQLException e) {
+                    throw new IOException("Could not read legacy avatar " + blob.getAvatarId(), e);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public Optional<Path> findAvatarFile(Avatar avatar) throws IOException {
+        if (avatar.getContentHash() != null) {
+            Optional<Path> file = avatarStorage.localFile(avatar.getContentHash());
+            if (file.isPresent()) {
+                return file;
+            }
+        }
+        if (avatar.getFilePath() != null) {
+            Path path = Path.of(avatar.getFilePath());
+            if (Files.isRegularFile(path)) {
+                return Optional.of(path);
+            }
+        }
+        return Optional.empty();
+    }
+
+    // content without a local file: a mapped segment view or a buffer from the byte cache
+    public Optional<CachedAvatar> findAvatarBuffer(Long studentId, Avatar avatar) throws IOException {
+        String contentHash = avatar.getContentHash();
+        if (contentHash != null) {
+            Optional<ByteBuffer> mapped = avatarStorage.mappedView(contentHash);
+            if (mapped.isPresent()) {
+                return Optional.of(new CachedAvatar(avatar.getMediaType(), contentHash, mapped.get()));
+            }
+        }
+        return avatarByteCache.get(studentId, contentHash);
+    }
+
+    public Optional<CachedAvatar> cacheAvatarData(Long studentId, Avatar avatar, Resource data) throws IOException {
+        return avatarByteCache.load(studentId, avatar.getMediaType(), avatar.getContentHash(), data);
+    }
+
+    public AvatarCacheStats getCacheStats() {
+        return avatarByteCache.stats();
+    }
+
+    public Optional<AvatarPreview> findAvatarPreview(Long studentId, Integer width) throws IOException {
+        Optional<Avatar> avatar = findAvatarByStudentId(studentId);
+        if (avatar.isEmpty()) {
+            return Optional.empty();
+        }
+        Optional<AvatarPreview> thumbnail = findThumbnail(avatar.get().getContentHash(), width);
+        if (thumbnail.isPresent()) {
+            return thumbnail;
+        }
+        return findAvatarData(avatar.get()).map(resource -> new AvatarPreview(resource, avatar.get().getMediaType()));
+    }
+
+    private Optional<AvatarPreview> findThumbnail(String contentHash, Integer width) throws IOException {
+        if (width == null || width <= 0) {
+            return Optional.empty();
+        }
+        return avatarThumbnailService.findThumbnail(contentHash, width);
+    }
+
     public Page<Avatar> getAllAvatars(Integer page, Integer size) {
         Pageable pageable = PageRequest.of(page, size);
         return avatarRepository.findAll(pageable);
     }
 
+    public AvatarSlice getAvatarSlice(Long cursor, int size) {
+        Slice<AvatarSummary> slice = avatarRepository.findSummariesAfter(
+                cursor == null ? 0L : cursor, PageRequest.of(0, size));
+        List<AvatarSummary> content = slice.getContent();
+        Long nextCursor = slice.hasNext() ? content.get(content.size() - 1).id() : null;
+        return new AvatarSlice(content, nextCursor, slice.hasNext());
+    }
+
     public Avatar saveAvatar(Avatar avatar) {
         return avatarRepository.save(avatar);
     }
 
     public void uploadAvatar(Long studentId, MultipartFile avatarFile) throws IOException {
+        logger.info("Was invoked method for upload avatar for student id: {}", studentId);
+        logger.debug("Uploading avatar file: originalFilename={}, size={} bytes, contentType={}",
+                avatarFile.getOriginalFilename(), avatarFile.getSize(), avatarFile.getContentType());
         Student student = studentRepository.findById(studentId)
                 .orElseThrow(() -> new IllegalArgumentException("Student not found"));
 
-        Avatar avatar = findAvatarByStudentId(studentId)
-                .orElse(new Avatar());
-
-        avatar.setStudent(student);
-        avatar.setMediaType(avatarFile.getContentType());
-        avatar.setFileSize(avatarFile.getSize());
-        avatar.setData(avatarFile.getBytes());
+        StoredAvatarContent storedFile;
+        try {
+            storedFile = avatarContentService.store(avatarFile);
+            logger.debug("Avatar content stored as: {}", storedFile.contentHash());
+        } catch (IOException e) {
+            logger.error("Error while saving avatar file for student id {}: {}", studentId, e.getMessage());
+            throw e;
+        }
 
-        String fileName = "avatar_" + studentId + "_" + System.currentTimeMillis() +
-                getFileExtension(avatarFile.getOriginalFilename());
-        Path filePath = Path.of("avatars", fileName);
-        Files.createDirectories(filePath.getParent());
-        Files.write(filePath, avatarFile.getBytes());
-        avatar.setFilePath(filePath.toAbsolutePath().toString());
+        Avatar savedAvatar = transactionTemplate.execute(status -> {
+            avatarContentService.releaseOnRollback(storedFile.contentHash());
+            Avatar avatar = findAvatarByStudentId(studentId)
+                    .orElse(new Avatar());
+            avatarContentService.releaseAfterCommit(avatar.getContentHash());
 
-        saveAvatar(avatar);
-    }
+            avatar.setStudent(student);
+            avatar.setMediaType(avatarFile.getContentType());
+            avatar.setFileSize(storedFile.size());
+            avatar.setContentHash(storedFile.contentHash());
+            avatar.setFilePath(null);
 
-    private String getFileExtension(String fileName) {
-        return fileName != null && fileName.contains(".")
-                ? fileName.substring(fileName.lastIndexOf("."))
-                : "";
+            Avatar saved = saveAvatar(avatar);
+            avatarBlobRepository.deleteById(saved.getId());
+            return saved;
+        });
+        avatarByteCache.invalidate(studentId);
+        avatarThumbnailService.generateAll(storedFile.contentHash());
+        logger.info("Avatar successfully uploaded for student id: {}", studentId);
+        logger.debug("Avatar saved with id: {}, contentHash: {}", savedAvatar.getId(), savedAvatar.getContentHash());
     }
 }
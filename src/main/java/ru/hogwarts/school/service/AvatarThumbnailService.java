@@ -0,0 +1,251 @@
+package ru.hogwarts.school.service;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import ru.hogwarts.school.storage.AvatarStorage;
+
+@Service
+public class AvatarThumbnailService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AvatarThumbnailService.class);
+
+    private final AvatarStorage avatarStorage;
+    private final Path avatarsDir;
+    private final int[] widths;
+    private final ThreadPoolExecutor executor;
+    private final long maxPixels;
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final Set<String> skipped;
+
+    public AvatarThumbnailService(AvatarStorage avatarStorage,
+                                  @Value("${avatars.dir.path}") String avatarsDir,
+                                  @Value("${avatars.thumbnail.widths:64,128,256}") int[] widths,
+                                  @Value("${avatars.thumbnail.threads:2}") int threads,
+                                  @Value("${avatars.thumbnail.queue-size:256}") int queueSize,
+                                  @Value("${avatars.thumbnail.max-pixels:16777216}") long maxPixels,
+                                  @Value("${avatars.thumbnail.skipped-capacity:10000}") int skippedCapacity) {
+        this.avatarStorage = avatarStorage;
+        this.avatarsDir = Path.of(avatarsDir);
+        this.widths = Arrays.stream(widths).filter(w -> w > 0).sorted().distinct().toArray();
+        this.maxPixels = maxPixels;
+        this.skipped = Collections.newSetFromMap(Collections.synchronizedMap(
+                new LinkedHashMap<>(64, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                        return size() > skippedCapacity;
+                    }
+                }));
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "avatar-thumbnail-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public void generateAll(String contentHash) {
+        for (int width : widths) {
+            schedule(contentHash, width);
+        }
+    }
+
+    public void deleteAll(String contentHash) throws IOException {
+        for (int width : widths) {
+            skipped.remove(key(contentHash, width));
+            for (ThumbnailFormat format : ThumbnailFormat.values()) {
+                avatarStorage.delete(variantKey(contentHash, width, format));
+            }
+        }
+    }
+
+    public Optional<AvatarPreview> findThumbnail(String contentHash, int requestedWidth) throws IOException {
+        if (contentHash == null || widths.length == 0) {
+            return Optional.empty();
+        }
+        int width = selectWidth(requestedWidth);
+        String key = key(contentHash, width);
+        if (skipped.contains(key)) {
+            return Optional.empty();
+        }
+        for (ThumbnailFormat format : ThumbnailFormat.values()) {
+            Optional<Resource> variant = avatarStorage.find(variantKey(contentHash, width, format));
+            if (variant.isPresent()) {
+                return Optional.of(new AvatarPreview(variant.get(), format.mediaType));
+            }
+        }
+        schedule(contentHash, width);
+        return Optional.empty();
+    }
+
+    private int selectWidth(int requestedWidth) {
+        for (int width : widths) {
+            if (width >= requestedWidth) {
+                return width;
+            }
+        }
+        return widths[widths.length - 1];
+    }
+
+    private void schedule(String contentHash, int width) {
+        String key = key(contentHash, width);
+        if (skipped.contains(key) || !pending.add(key)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    generate(contentHash, width);
+                } catch (IOException | RuntimeException e) {
+                    logger.warn("Could not generate {}px thumbnail for avatar content {}: {}",
+                            width, contentHash, e.getMessage());
+                } finally {
+                    pending.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.remove(key);
+            logger.debug("Thumbnail queue is full, {}px variant of {} will be generated on a later request",
+                    width, contentHash);
+        }
+    }
+
+    private void generate(String contentHash, int width) throws IOException {
+        Optional<Resource> original = avatarStorage.find(contentHash);
+        if (original.isEmpty()) {
+            return;
+        }
+        BufferedImage source;
+        try (InputStream raw = original.get().getInputStream();
+             ImageInputStream in = ImageIO.createImageInputStream(raw)) {
+            Iterator<ImageReader> readers = in == null ? Collections.emptyIterator() : ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                // ImageIO has no WebP decoder, so WebP avatars are always served in their original size
+                skip(contentHash, width, "no image decoder for its format");
+                return;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int sourceWidth = reader.getWidth(0);
+                int sourceHeight = reader.getHeight(0);
+                if ((long) sourceWidth * sourceHeight > maxPixels) {
+                    logger.warn("Avatar content {} is {}x{} pixels, over the limit of {}, not generating thumbnails",
+                            contentHash, sourceWidth, sourceHeight, maxPixels);
+                    skip(contentHash, width, "too many pixels");
+                    return;
+                }
+                if (sourceWidth <= width) {
+                    skip(contentHash, width, "it is not wider than the thumbnail");
+                    return;
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, sourceWidth / (2 * width));
+                param.setSourceSubsampling(step, step, 0, 0);
+                source = reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+
+        boolean alpha = source.getColorModel().hasAlpha();
+        ThumbnailFormat format = alpha ? ThumbnailFormat.PNG : ThumbnailFormat.JPEG;
+        int height = Math.max(1, Math.round((float) source.getHeight() * width / source.getWidth()));
+
+        BufferedImage thumbnail = new BufferedImage(width, height,
+                alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = thumbnail.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+
+        String variantKey = variantKey(contentHash, width, format);
+        Files.createDirectories(avatarsDir);
+        Path tempFile = Files.createTempFile(avatarsDir, "thumbnail-", ".tmp");
+        try {
+            ImageIO.write(thumbnail, format.formatName, tempFile.toFile());
+            avatarStorage.put(variantKey, tempFile);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        // the original is deleted before deleteAll runs, so a variant stored after that deleteAll
+        // is only left behind when the original is already gone by now
+        if (!avatarStorage.exists(contentHash)) {
+            avatarStorage.delete(variantKey);
+            logger.debug("Avatar content {} was deleted while its {}px thumbnail was generated, dropping it",
+                    contentHash, width);
+            return;
+        }
+        logger.debug("Generated {}px thumbnail for avatar content {}: {}", width, contentHash, variantKey);
+    }
+
+    private void skip(String contentHash, int width, String reason) {
+        skipped.add(key(contentHash, width));
+        logger.debug("No {}px thumbnail for avatar content {}: {}", width, contentHash, reason);
+    }
+
+    private static String variantKey(String contentHash, int width, ThumbnailFormat format) {
+        return contentHash + ".w" + width + "." + format.extension;
+    }
+
+    private static String key(String contentHash, int width) {
+        return contentHash + ":" + width;
+    }
+
+    private enum ThumbnailFormat {
+        JPEG("jpg", "jpg", MediaType.IMAGE_JPEG_VALUE),
+        PNG("png", "png", MediaType.IMAGE_PNG_VALUE);
+
+        private final String formatName;
+        private final String extension;
+        private final String mediaType;
+
+        ThumbnailFormat(String formatName, String extension, String mediaType) {
+            this.formatName = formatName;
+            this.extension = extension;
+            this.mediaType = mediaType;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package ru.hogwarts.school.service;
+
+public class AvatarTooLargeException extends RuntimeException {
+
+    public AvatarTooLargeException(long maxSize) {
+        super("Avatar exceeds the limit of " + maxSize + " bytes");
+    }
+}
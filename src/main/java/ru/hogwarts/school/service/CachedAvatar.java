@@ -0,0 +1,48 @@
+package ru.hogwarts.school.service;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public final class CachedAvatar implements AutoCloseable {
+
+    private final String mediaType;
+    private final String contentHash;
+    private final ByteBuffer data;
+    private final Runnable release;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    public CachedAvatar(String mediaType, String contentHash, ByteBuffer data) {
+        this(mediaType, contentHash, data, null);
+    }
+
+    CachedAvatar(String mediaType, String contentHash, ByteBuffer data, Runnable release) {
+        this.mediaType = mediaType;
+        this.contentHash = contentHash;
+        this.data = data.asReadOnlyBuffer();
+        this.release = release;
+    }
+
+    public String mediaType() {
+        return mediaType;
+    }
+
+    public String contentHash() {
+        return contentHash;
+    }
+
+    public ByteBuffer data() {
+        return data.duplicate();
+    }
+
+    public int size() {
+        return data.remaining();
+    }
+
+    // a cached buffer is freed only once the cache and every reader holding it have closed it
+    @Override
+    public void close() {
+        if (release != null && closed.compareAndSet(false, true)) {
+            release.run();
+        }
+    }
+}
@@ -0,0 +1,486 @@
+package ru.hogwarts.school.service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.hogwarts.school.listener.FacultyChangedEvent;
+import ru.hogwarts.school.listener.StudentChangedEvent;
+import ru.hogwarts.school.model.ChangeEvent;
+import ru.hogwarts.school.model.ChangeFeedEvent;
+import ru.hogwarts.school.model.StudentSnapshot;
+import ru.hogwarts.school.repositories.ChangeEventRepository;
+
+@Component
+public class ChangeFeed {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChangeFeed.class);
+
+    private static final String STUDENT = "student";
+    private static final String FACULTY = "faculty";
+    private static final String RESET = "reset";
+
+    private final ChangeEventRepository changeEventRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService sender;
+    private final int journalCapacity;
+    private final int maxSubscribers;
+    private final int pageSize;
+    private final long subscriberTimeout;
+    private final long writeTimeout;
+    private final Duration retention;
+
+    private final Object journalLock = new Object();
+    private final ArrayDeque<ChangeFeedEvent> journal = new ArrayDeque<>();
+    private final List<Subscriber> subscribers = new ArrayList<>();
+    private final TreeSet<Long> inFlight = new TreeSet<>();
+    private final TreeMap<Long, ChangeFeedEvent> committed = new TreeMap<>();
+    private int allocating;
+    private boolean initialized;
+    private long journalFloor;
+    private long lastSequence;
+
+    public ChangeFeed(ChangeEventRepository changeEventRepository, EntityManager entityManager,
+                      ObjectMapper objectMapper, PlatformTransactionManager transactionManager,
+                      @Value("${changes.journal.capacity:10000}") int journalCapacity,
+                      @Value("${changes.subscriber.max:1000}") int maxSubscribers,
+                      @Value("${changes.subscriber.timeout:PT30M}") Duration subscriberTimeout,
+                      @Value("${changes.subscriber.write-timeout:PT10S}") Duration writeTimeout,
+                      @Value("${changes.page-size:500}") int pageSize,
+                      @Value("${changes.sender-threads:2}") int senderThreads,
+                      @Value("${changes.retention:P7D}") Duration retention) {
+        this.changeEventRepository = changeEventRepository;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.journalCapacity = journalCapacity;
+        this.maxSubscribers = maxSubscribers;
+        this.subscriberTimeout = subscriberTimeout.toMillis();
+        this.writeTimeout = writeTimeout.toNanos();
+        this.pageSize = pageSize;
+        this.retention = retention;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.sender = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "change-feed-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // runs before the web server's graceful shutdown, which would otherwise wait for these open streams
+    @EventListener(ContextClosedEvent.class)
+    public void shutdown() {
+        sender.shutdownNow();
+        List<Subscriber> open;
+        synchronized (journalLock) {
+            open = List.copyOf(subscribers);
+        }
+        open.forEach(Subscriber::close);
+    }
+
+    public SseEmitter subscribe(Long lastEventId) {
+        ensureInitialized();
+        SseEmitter emitter = new SseEmitter(subscriberTimeout);
+        Subscriber subscriber;
+        synchronized (journalLock) {
+            if (subscribers.size() >= maxSubscribers) {
+                throw new ChangeFeedFullException(maxSubscribers);
+            }
+            subscriber = new Subscriber(emitter, lastEventId, lastSequence);
+            subscribers.add(subscriber);
+        }
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(error -> subscriber.close());
+        logger.debug("Change feed subscriber registered from {} at {}", lastEventId, subscriber.liveFrom);
+        subscriber.schedule();
+        return emitter;
+    }
+
+    @EventListener
+    public void onStudentChanged(StudentChangedEvent event) {
+        StudentSnapshot student = event.current() != null ? event.current() : event.previous();
+        record(new ChangeEvent(STUDENT, student.id(), event.type().name(), toJson(student), Instant.now()));
+    }
+
+    @EventListener
+    public void onFacultyChanged(FacultyChangedEvent event) {
+        record(new ChangeEvent(FACULTY, event.faculty().id(), event.type().name(), toJson(event.faculty()),
+                Instant.now()));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureInitialized() {
+        synchronized (journalLock) {
+            if (initialized) {
+                return;
+            }
+            Long maxId = transactionTemplate.execute(status -> changeEventRepository.findMaxId());
+            journalFloor = maxId == null ? 0 : maxId;
+            lastSequence = journalFloor;
+            initialized = true;
+        }
+        publish();
+    }
+
+    // a comment line makes dead clients fail a write instead of holding a slot until the subscriber timeout;
+    // a subscriber whose write has been blocked for longer than the write timeout gives up its slot right away
+    @Scheduled(initialDelayString = "${changes.heartbeat-interval:PT15S}",
+            fixedDelayString = "${changes.heartbeat-interval:PT15S}")
+    public void heartbeat() {
+        List<Subscriber> open;
+        synchronized (journalLock) {
+            open = List.copyOf(subscribers);
+        }
+        long now = System.nanoTime();
+        for (Subscriber subscriber : open) {
+            if (subscriber.isStalled(now)) {
+                logger.debug("Change feed subscriber did not accept a write within {} ms, closing it",
+                        Duration.ofNanos(writeTimeout).toMillis());
+                subscriber.close();
+            } else {
+                subscriber.requestHeartbeat();
+            }
+        }
+    }
+
+    @Scheduled(initialDelayString = "${changes.purge-interval:PT1H}",
+            fixedDelayString = "${changes.purge-interval:PT1H}")
+    public void purge() {
+        Instant before = Instant.now().minus(retention);
+        Integer deleted = transactionTemplate.execute(status -> changeEventRepository.deleteCreatedBefore(before));
+        logger.debug("Purged {} change events older than {}", deleted, before);
+    }
+
+    // The rows are written by the transaction that made the change, so a change is committed together with its
+    // event or not at all. The entity callbacks that report changes run inside a flush, where nothing new may be
+    // persisted, so the rows go in right before the commit through a short-lived session on the same connection.
+    private void record(ChangeEvent change) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            List<ChangeEvent> changes = List.of(change);
+            try {
+                transactionTemplate.executeWithoutResult(status -> allocate(changes, changeEventRepository::save));
+            } catch (RuntimeException e) {
+                complete(changes, false);
+                throw e;
+            }
+            complete(changes, true);
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        List<ChangeEvent> pending = (List<ChangeEvent>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            List<ChangeEvent> changes = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, changes);
+            entityManager.unwrap(SessionImplementor.class).getActionQueue()
+                    .registerProcess(session -> persist(session, changes));
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(ChangeFeed.this);
+                    complete(changes, status == STATUS_COMMITTED);
+                }
+            });
+            pending = changes;
+        }
+        pending.add(change);
+    }
+
+    private void persist(SessionImplementor session, List<ChangeEvent> changes) {
+        try (Session outbox = session.sessionWithOptions()
+                .connection()
+                .autoClose(false)
+                .connectionHandlingMode(PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION)
+                .openSession()) {
+            allocate(changes, outbox::persist);
+            outbox.flush();
+        }
+    }
+
+    // Transactions commit in any order, so a committed event is held back while a lower sequence may still commit.
+    // Sequences handed out during an allocation are not known until it ends, so nothing is published meanwhile.
+    private void allocate(List<ChangeEvent> changes, Consumer<ChangeEvent> persister) {
+        synchronized (journalLock) {
+            allocating++;
+        }
+        try {
+            changes.forEach(persister);
+        } finally {
+            synchronized (journalLock) {
+                allocating--;
+                for (ChangeEvent change : changes) {
+                    if (change.getId() != null) {
+                        inFlight.add(change.getId());
+                    }
+                }
+            }
+            publish();
+        }
+    }
+
+    private void complete(List<ChangeEvent> changes, boolean succeeded) {
+        synchronized (journalLock) {
+            for (ChangeEvent change : changes) {
+                if (change.getId() == null) {
+                    continue;
+                }
+                inFlight.remove(change.getId());
+                if (succeeded) {
+                    committed.put(change.getId(), ChangeFeedEvent.of(change));
+                }
+            }
+        }
+        publish();
+    }
+
+    private void publish() {
+        List<Subscriber> targets;
+        synchronized (journalLock) {
+            boolean published = false;
+            while (initialized && allocating == 0 && !committed.isEmpty()
+                    && (inFlight.isEmpty() || committed.firstKey() < inFlight.first())) {
+                ChangeFeedEvent event = committed.pollFirstEntry().getValue();
+                if (event.sequence() <= lastSequence) {
+                    continue;
+                }
+                journal.addLast(event);
+                if (journal.size() > journalCapacity) {
+                    journalFloor = journal.removeFirst().sequence();
+                }
+                lastSequence = event.sequence();
+                published = true;
+            }
+            if (!published) {
+                return;
+            }
+            targets = List.copyOf(subscribers);
+        }
+        targets.forEach(Subscriber::schedule);
+    }
+
+    private List<ChangeFeedEvent> backlog(long after, long upTo) {
+        synchronized (journalLock) {
+            if (after >= journalFloor) {
+                List<ChangeFeedEvent> events = new ArrayList<>();
+                for (ChangeFeedEvent event : journal) {
+                    if (event.sequence() > upTo || events.size() == pageSize) {
+                        break;
+                    }
+                    if (event.sequence() > after) {
+                        events.add(event);
+                    }
+                }
+                return events;
+            }
+        }
+        List<ChangeEvent> rows = transactionTemplate.execute(status ->
+                changeEventRepository.findByIdGreaterThanOrderById(after, PageRequest.of(0, pageSize)).getContent());
+        return rows.stream()
+                .map(ChangeFeedEvent::of)
+                .filter(event -> event.sequence() <= upTo)
+                .toList();
+    }
+
+    private boolean isRetained(long sequence, long liveFrom) {
+        if (sequence > liveFrom) {
+            return false;
+        }
+        synchronized (journalLock) {
+            if (sequence >= journalFloor) {
+                return true;
+            }
+        }
+        Long minId = transactionTemplate.execute(status -> changeEventRepository.findMinId());
+        return minId != null && sequence >= minId;
+    }
+
+    private long lastSequence() {
+        synchronized (journalLock) {
+            return lastSequence;
+        }
+    }
+
+    private void remove(Subscriber subscriber) {
+        synchronized (journalLock) {
+            subscribers.remove(subscriber);
+        }
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize change event", e);
+        }
+    }
+
+    // every turn on the sender pool writes at most one page, then queues the subscriber behind the others
+    private final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private final Long lastEventId;
+        private final long liveFrom;
+        private volatile boolean closed;
+        private volatile boolean heartbeatDue = true;
+        private volatile boolean sending;
+        private volatile long sendStarted;
+        private boolean started;
+        private long cursor;
+
+        Subscriber(SseEmitter emitter, Long lastEventId, long liveFrom) {
+            this.emitter = emitter;
+            this.lastEventId = lastEventId;
+            this.liveFrom = liveFrom;
+            this.cursor = lastEventId == null ? liveFrom : lastEventId;
+        }
+
+        void schedule() {
+            if (closed || !scheduled.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                sender.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                scheduled.set(false);
+                close();
+            }
+        }
+
+        void requestHeartbeat() {
+            heartbeatDue = true;
+            schedule();
+        }
+
+        boolean isStalled(long now) {
+            return sending && now - sendStarted > writeTimeout;
+        }
+
+        // a blocked write holds the emitter's monitor, so completing is left to the sender once the write returns
+        void close() {
+            if (!closed) {
+                closed = true;
+                remove(this);
+            }
+            if (!sending) {
+                complete();
+            }
+        }
+
+        private void complete() {
+            if (!completed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                emitter.complete();
+            } catch (IllegalStateException e) {
+                logger.debug("Change feed subscriber was already closed: {}", e.getMessage());
+            }
+        }
+
+        private void drain() {
+            try {
+                if (!started) {
+                    started = true;
+                    if (lastEventId != null && lastEventId > 0 && !isRetained(lastEventId, liveFrom)) {
+                        sendReset(liveFrom);
+                    }
+                }
+                long head = lastSequence();
+                if (cursor < head) {
+                    List<ChangeFeedEvent> page = backlog(cursor, head);
+                    if (page.isEmpty()) {
+                        cursor = head;
+                    }
+                    for (ChangeFeedEvent event : page) {
+                        if (closed) {
+                            break;
+                        }
+                        send(event);
+                    }
+                } else if (heartbeatDue) {
+                    sendHeartbeat();
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.debug("Change feed subscriber disconnected: {}", e.getMessage());
+                close();
+            } finally {
+                scheduled.set(false);
+            }
+            if (closed) {
+                complete();
+            } else if (cursor < lastSequence() || heartbeatDue) {
+                schedule();
+            }
+        }
+
+        private void sendReset(long sequence) throws IOException {
+            write(SseEmitter.event()
+                    .id(Long.toString(sequence))
+                    .name(RESET)
+                    .data(Map.of("sequence", sequence), MediaType.APPLICATION_JSON));
+            cursor = sequence;
+        }
+
+        private void send(ChangeFeedEvent event) throws IOException {
+            write(SseEmitter.event()
+                    .id(Long.toString(event.sequence()))
+                    .name(event.entity())
+                    .data(event, MediaType.APPLICATION_JSON));
+            cursor = event.sequence();
+        }
+
+        private void sendHeartbeat() throws IOException {
+            write(SseEmitter.event().comment("heartbeat"));
+        }
+
+        private void write(SseEmitter.SseEventBuilder event) throws IOException {
+            heartbeatDue = false;
+            sendStarted = System.nanoTime();
+            sending = true;
+            try {
+                emitter.send(event);
+            } finally {
+                sending = false;
+            }
+        }
+    }
+}
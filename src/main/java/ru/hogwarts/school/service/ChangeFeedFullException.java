@@ -0,0 +1,8 @@
+package ru.hogwarts.school.service;
+
+public class ChangeFeedFullException extends RuntimeException {
+
+    public ChangeFeedFullException(int maxSubscribers) {
+        super("Change feed already has " + maxSubscribers + " subscribers");
+    }
+}
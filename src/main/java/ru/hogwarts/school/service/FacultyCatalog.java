@@ -0,0 +1,164 @@
+package ru.hogwarts.school.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.hogwarts.school.listener.FacultyChangedEvent;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.FacultySnapshot;
+import ru.hogwarts.school.repositories.FacultyRepository;
+
+@Component
+public class FacultyCatalog {
+
+    private static final Logger logger = LoggerFactory.getLogger(FacultyCatalog.class);
+
+    private static final int MAX_LOAD_ATTEMPTS = 5;
+
+    private final FacultyRepository facultyRepository;
+    private final Object writeLock = new Object();
+    private long version;
+    private volatile Snapshot snapshot;
+
+    public FacultyCatalog(FacultyRepository facultyRepository) {
+        this.facultyRepository = facultyRepository;
+    }
+
+    public Optional<Faculty> find(Long id) {
+        return Optional.ofNullable(current().byId().get(id));
+    }
+
+    public boolean contains(Long id) {
+        return current().byId().containsKey(id);
+    }
+
+    public List<Faculty> findByColor(String color) {
+        return current().byColor().getOrDefault(color, List.of());
+    }
+
+    public Collection<Faculty> findAll() {
+        return current().byId().values();
+    }
+
+    public String longestName() {
+        return current().longestName();
+    }
+
+    public Optional<List<Faculty>> search(String query) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return Optional.empty();
+        }
+        return Optional.of(current.searchIndex().search(query));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFacultyChanged(FacultyChangedEvent event) {
+        FacultySnapshot faculty = event.faculty();
+        if (event.type() == FacultyChangedEvent.Type.DELETED) {
+            remove(faculty.id());
+        } else {
+            put(new Faculty(faculty.id(), faculty.name(), faculty.color()));
+        }
+    }
+
+    private void put(Faculty faculty) {
+        current();
+        synchronized (writeLock) {
+            Map<Long, Faculty> byId = new HashMap<>(snapshot.byId());
+            byId.put(faculty.getId(), faculty);
+            snapshot = Snapshot.of(byId.values());
+            version++;
+        }
+    }
+
+    private void remove(Long id) {
+        current();
+        synchronized (writeLock) {
+            Map<Long, Faculty> byId = new HashMap<>(snapshot.byId());
+            if (byId.remove(id) != null) {
+                snapshot = Snapshot.of(byId.values());
+            }
+            version++;
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${faculties.catalog.reload-interval:PT10M}",
+            fixedDelayString = "${faculties.catalog.reload-interval:PT10M}")
+    public void load() {
+        for (int attempt = 1; attempt <= MAX_LOAD_ATTEMPTS; attempt++) {
+            long startVersion;
+            synchronized (writeLock) {
+                startVersion = version;
+            }
+            List<Faculty> faculties = facultyRepository.findAll().stream()
+                    .map(FacultyCatalog::copyOf)
+                    .toList();
+            synchronized (writeLock) {
+                if (version == startVersion || attempt == MAX_LOAD_ATTEMPTS) {
+                    snapshot = Snapshot.of(faculties);
+                    logger.debug("Faculty catalog loaded {} faculties", faculties.size());
+                    return;
+                }
+            }
+            logger.debug("Faculties changed while the catalog was loading, retrying");
+        }
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    load();
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+
+    private static Faculty copyOf(Faculty faculty) {
+        return new Faculty(faculty.getId(), faculty.getName(), faculty.getColor());
+    }
+
+    private record Snapshot(Map<Long, Faculty> byId, Map<String, List<Faculty>> byColor, String longestName,
+                            FacultySearchIndex searchIndex) {
+
+        static Snapshot of(Collection<Faculty> faculties) {
+            List<Faculty> sorted = new ArrayList<>(faculties);
+            sorted.sort(Comparator.comparing(Faculty::getId));
+
+            Map<Long, Faculty> byId = new LinkedHashMap<>();
+            Map<String, List<Faculty>> byColor = new HashMap<>();
+            String longestName = "";
+            for (Faculty faculty : sorted) {
+                byId.put(faculty.getId(), faculty);
+                if (faculty.getColor() != null) {
+                    byColor.computeIfAbsent(faculty.getColor(), color -> new ArrayList<>()).add(faculty);
+                }
+                if (faculty.getName() != null && faculty.getName().length() > longestName.length()) {
+                    longestName = faculty.getName();
+                }
+            }
+            byColor.replaceAll((color, list) -> List.copyOf(list));
+            return new Snapshot(Collections.unmodifiableMap(byId), Map.copyOf(byColor), longestName,
+                    new FacultySearchIndex(sorted));
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package ru.hogwarts.school.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import ru.hogwarts.school.model.Faculty;
+
+final class FacultySearchIndex {
+
+    private static final int GRAM_LENGTH = 3;
+
+    private static final int NAME_EXACT = 0;
+    private static final int NAME_PREFIX = 1;
+    private static final int NAME_CONTAINS = 2;
+    private static final int COLOR_EXACT = 3;
+    private static final int COLOR_PREFIX = 4;
+    private static final int COLOR_CONTAINS = 5;
+    private static final int NO_MATCH = -1;
+
+    private final Faculty[] faculties;
+    private final String[] names;
+    private final String[] colors;
+    private final Map<String, int[]> postings;
+
+    FacultySearchIndex(List<Faculty> faculties) {
+        this.faculties = faculties.toArray(new Faculty[0]);
+        this.names = new String[this.faculties.length];
+        this.colors = new String[this.faculties.length];
+
+        Map<String, int[]> lists = new HashMap<>();
+        Map<String, Integer> sizes = new HashMap<>();
+        for (int position = 0; position < this.faculties.length; position++) {
+            names[position] = normalize(this.faculties[position].getName());
+            colors[position] = normalize(this.faculties[position].getColor());
+            addGrams(names[position], position, lists, sizes);
+            addGrams(colors[position], position, lists, sizes);
+        }
+        lists.replaceAll((gram, list) -> Arrays.copyOf(list, sizes.get(gram)));
+        this.postings = lists;
+    }
+
+    List<Faculty> search(String query) {
+        String normalized = normalize(query);
+        int[] candidates = normalized.length() < GRAM_LENGTH ? null : candidates(normalized);
+        int count = candidates == null ? faculties.length : candidates.length;
+
+        List<Match> matches = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int position = candidates == null ? i : candidates[i];
+            int rank = rank(position, normalized);
+            if (rank != NO_MATCH) {
+                matches.add(new Match(position, rank));
+            }
+        }
+        matches.sort(Comparator.comparingInt(Match::rank)
+                .thenComparingInt(match -> names[match.position()].length())
+                .thenComparingInt(Match::position));
+
+        List<Faculty> result = new ArrayList<>(matches.size());
+        for (Match match : matches) {
+            result.add(faculties[match.position()]);
+        }
+        return result;
+    }
+
+    private int[] candidates(String query) {
+        List<int[]> lists = new ArrayList<>();
+        for (int start = 0; start + GRAM_LENGTH <= query.length(); start++) {
+            int[] list = postings.get(query.substring(start, start + GRAM_LENGTH));
+            if (list == null) {
+                return new int[0];
+            }
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(list -> list.length));
+
+        int[] result = lists.get(0);
+        for (int i = 1; i < lists.size() && result.length > 0; i++) {
+            result = intersect(result, lists.get(i));
+        }
+        return result;
+    }
+
+    private int rank(int position, String query) {
+        String name = names[position];
+        String color = colors[position];
+        if (name.equals(query)) {
+            return NAME_EXACT;
+        }
+        if (name.startsWith(query)) {
+            return NAME_PREFIX;
+        }
+        if (name.contains(query)) {
+            return NAME_CONTAINS;
+        }
+        if (color.equals(query)) {
+            return COLOR_EXACT;
+        }
+        if (color.startsWith(query)) {
+            return COLOR_PREFIX;
+        }
+        if (color.contains(query)) {
+            return COLOR_CONTAINS;
+        }
+        return NO_MATCH;
+    }
+
+    private static void addGrams(String value, int position, Map<String, int[]> lists, Map<String, Integer> sizes) {
+        for (int start = 0; start + GRAM_LENGTH <= value.length(); start++) {
+            String gram = value.substring(start, start + GRAM_LENGTH);
+            int[] list = lists.computeIfAbsent(gram, key -> new int[4]);
+            int size = sizes.getOrDefault(gram, 0);
+            if (size > 0 && list[size - 1] == position) {
+                continue;
+            }
+            if (size == list.length) {
+                list = Arrays.copyOf(list, size * 2);
+                lists.put(gram, list);
+            }
+            list[size] = position;
+            sizes.put(gram, size + 1);
+        }
+    }
+
+    private static int[] intersect(int[] left, int[] right) {
+        int[] result = new int[Math.min(left.length, right.length)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < left.length && j < right.length) {
+            if (left[i] < right[j]) {
+                i++;
+            } else if (left[i] > right[j]) {
+                j++;
+            } else {
+                result[count++] = left[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+
+    private record Match(int position, int rank) {
+    }
+}
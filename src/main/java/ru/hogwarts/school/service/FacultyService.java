@@ -2,10 +2,15 @@ package ru.hogwarts.school.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import ru.hogwarts.school.model.Faculty;
-import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.model.FacultyStats;
+import ru.hogwarts.school.model.StudentSlice;
+import ru.hogwarts.school.model.StudentSummary;
 import ru.hogwarts.school.repositories.FacultyRepository;
+import ru.hogwarts.school.repositories.StudentRepository;
 
 import java.util.*;
 
@@ -15,57 +20,87 @@ public class FacultyService {
     private static final Logger logger = LoggerFactory.getLogger(FacultyService.class);
 
     private final FacultyRepository facultyRepository;
+    private final FacultyCatalog facultyCatalog;
+    private final StudentRepository studentRepository;
+    private final FacultyStatistics facultyStatistics;
 
-    public FacultyService(FacultyRepository facultyRepository) {
+    public FacultyService(FacultyRepository facultyRepository, FacultyCatalog facultyCatalog,
+                          StudentRepository studentRepository, FacultyStatistics facultyStatistics) {
         this.facultyRepository = facultyRepository;
+        this.facultyCatalog = facultyCatalog;
+        this.studentRepository = studentRepository;
+        this.facultyStatistics = facultyStatistics;
     }
 
     public Faculty createFaculty(Faculty faculty) {
-        return facultyRepository.save(faculty);
+        Faculty savedFaculty = facultyRepository.save(faculty);
+        facultyStatistics.invalidateFaculty(savedFaculty.getId());
+        return savedFaculty;
     }
 
     public Faculty findFaculty(Long id) {
-        if (id == null || !facultyRepository.existsById(id)) {
+        if (id == null) {
             return null;
         }
-        return facultyRepository.findById(id).orElse(null);
+        return facultyCatalog.find(id).orElse(null);
     }
 
     public Faculty editFaculty(Faculty faculty) {
-        if (faculty.getId() == null || !facultyRepository.existsById(faculty.getId())) {
+        if (faculty.getId() == null || !facultyCatalog.contains(faculty.getId())) {
             return null;
         }
-        return facultyRepository.save(faculty);
+        Faculty savedFaculty = facultyRepository.save(faculty);
+        facultyStatistics.invalidateFaculty(savedFaculty.getId());
+        return savedFaculty;
     }
 
     public void deleteFaculty(Long id) {
         facultyRepository.deleteById(id);
+        facultyStatistics.invalidateFaculty(id);
     }
 
     public List<Faculty> getFacultiesByColor(String color) {
-        return facultyRepository.findByColor(color);
+        return facultyCatalog.findByColor(color);
     }
 
     public Collection<Faculty> getAllFaculties() {
-        return facultyRepository.findAll();
+        return facultyCatalog.findAll();
     }
 
     public List<Faculty> findFacultiesByNameOrColor(String nameOrColor) {
-        return facultyRepository.findByNameContainingIgnoreCaseOrColorContainingIgnoreCase(nameOrColor, nameOrColor);
+        return facultyCatalog.search(nameOrColor).orElseGet(() -> {
+            logger.debug("Faculty catalog is not loaded yet, searching faculties in the database");
+            return facultyRepository.findByNameContainingIgnoreCaseOrColorContainingIgnoreCase(nameOrColor, nameOrColor);
+        });
     }
 
-    public List<Student> getFacultyStudents(Long facultyId) {
-        Optional<Faculty> faculty = facultyRepository.findById(facultyId);
-        return faculty.map(Faculty::getStudents).orElse(List.of());
+    public Optional<StudentSlice> getFacultyStudents(Long facultyId, Long cursor, int size) {
+        logger.info("Was invoked method for get students of faculty: {}", facultyId);
+        if (!facultyCatalog.contains(facultyId)) {
+            return Optional.empty();
+        }
+
+        Slice<StudentSummary> slice = studentRepository.findSummariesByFacultyAfter(
+                facultyId, cursor == null ? 0L : cursor, PageRequest.of(0, size));
+        List<StudentSummary> content = slice.getContent();
+        Long nextCursor = slice.hasNext() ? content.get(content.size() - 1).id() : null;
+        logger.debug("Found {} students of faculty {}", content.size(), facultyId);
+        return Optional.of(new StudentSlice(content, nextCursor, slice.hasNext()));
+    }
+
+    public List<FacultyStats> getFacultyStats() {
+        logger.info("Was invoked method for get faculty statistics");
+
+        List<FacultyStats> stats = facultyStatistics.findAll();
+
+        logger.debug("Collected statistics for {} faculties", stats.size());
+        return stats;
     }
 
     public String getLongestFacultyName() {
         logger.info("Was invoked method for get longest faculty name");
 
-        String longestName = facultyRepository.findAll().stream()
-                .map(Faculty::getName)
-                .max(Comparator.comparingInt(String::length))
-                .orElse("");
+        String longestName = facultyCatalog.longestName();
 
         logger.debug("Longest faculty name: {} (length: {})", longestName, longestName.length());
         return longestName;
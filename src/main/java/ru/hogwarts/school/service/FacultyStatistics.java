@@ -0,0 +1,166 @@
+package ru.hogwarts.school.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.hogwarts.school.listener.AvatarChangedEvent;
+import ru.hogwarts.school.listener.StudentChangedEvent;
+import ru.hogwarts.school.model.FacultyStats;
+import ru.hogwarts.school.model.StudentSnapshot;
+import ru.hogwarts.school.repositories.FacultyRepository;
+
+@Component
+public class FacultyStatistics {
+
+    private static final Logger logger = LoggerFactory.getLogger(FacultyStatistics.class);
+
+    private final FacultyRepository facultyRepository;
+    private final Object dirtyLock = new Object();
+    private final Object refreshLock = new Object();
+    private Set<Long> dirtyFaculties = new HashSet<>();
+    private Set<Long> dirtyStudents = new HashSet<>();
+    private volatile Map<Long, FacultyStats> snapshot;
+
+    public FacultyStatistics(FacultyRepository facultyRepository) {
+        this.facultyRepository = facultyRepository;
+    }
+
+    public List<FacultyStats> findAll() {
+        if (snapshot == null || isDirty()) {
+            refresh();
+        }
+        return List.copyOf(snapshot.values());
+    }
+
+    public void invalidateFaculty(Long facultyId) {
+        if (facultyId == null) {
+            return;
+        }
+        synchronized (dirtyLock) {
+            dirtyFaculties.add(facultyId);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStudentChanged(StudentChangedEvent event) {
+        StudentSnapshot previous = event.previous();
+        StudentSnapshot current = event.current();
+        if (previous != null && current != null
+                && Objects.equals(previous.facultyId(), current.facultyId()) && previous.age() == current.age()) {
+            return;
+        }
+        synchronized (dirtyLock) {
+            if (previous != null && previous.facultyId() != null) {
+                dirtyFaculties.add(previous.facultyId());
+            }
+            if (current != null && current.facultyId() != null) {
+                dirtyFaculties.add(current.facultyId());
+            }
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAvatarChanged(AvatarChangedEvent event) {
+        synchronized (dirtyLock) {
+            dirtyStudents.add(event.studentId());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${faculties.stats.reload-interval:PT10M}",
+            fixedDelayString = "${faculties.stats.reload-interval:PT10M}")
+    public void load() {
+        synchronized (refreshLock) {
+            Set<Long> faculties;
+            Set<Long> students;
+            synchronized (dirtyLock) {
+                faculties = dirtyFaculties;
+                students = dirtyStudents;
+                dirtyFaculties = new HashSet<>();
+                dirtyStudents = new HashSet<>();
+            }
+            List<FacultyStats> rows;
+            try {
+                rows = facultyRepository.findAllStats();
+            } catch (RuntimeException e) {
+                restoreDirty(faculties, students);
+                throw e;
+            }
+            Map<Long, FacultyStats> loaded = new TreeMap<>();
+            for (FacultyStats row : rows) {
+                loaded.put(row.facultyId(), row);
+            }
+            snapshot = Collections.unmodifiableMap(loaded);
+            logger.debug("Faculty statistics loaded for {} faculties", loaded.size());
+        }
+    }
+
+    private void refresh() {
+        synchronized (refreshLock) {
+            if (snapshot == null) {
+                load();
+                return;
+            }
+
+            Set<Long> faculties;
+            Set<Long> students;
+            synchronized (dirtyLock) {
+                faculties = dirtyFaculties;
+                students = dirtyStudents;
+                dirtyFaculties = new HashSet<>();
+                dirtyStudents = new HashSet<>();
+            }
+            if (faculties.isEmpty() && students.isEmpty()) {
+                return;
+            }
+
+            List<FacultyStats> rows = new ArrayList<>();
+            try {
+                if (!faculties.isEmpty()) {
+                    rows.addAll(facultyRepository.findStatsByFacultyIdIn(faculties));
+                }
+                if (!students.isEmpty()) {
+                    rows.addAll(facultyRepository.findStatsByStudentIdIn(students));
+                }
+            } catch (RuntimeException e) {
+                restoreDirty(faculties, students);
+                throw e;
+            }
+
+            Map<Long, FacultyStats> refreshed = new TreeMap<>(snapshot);
+            refreshed.keySet().removeAll(faculties);
+            for (FacultyStats row : rows) {
+                refreshed.put(row.facultyId(), row);
+            }
+            snapshot = Collections.unmodifiableMap(refreshed);
+            logger.debug("Faculty statistics refreshed for {} faculties and {} students",
+                    faculties.size(), students.size());
+        }
+    }
+
+    private boolean isDirty() {
+        synchronized (dirtyLock) {
+            return !dirtyFaculties.isEmpty() || !dirtyStudents.isEmpty();
+        }
+    }
+
+    private void restoreDirty(Set<Long> faculties, Set<Long> students) {
+        synchronized (dirtyLock) {
+            dirtyFaculties.addAll(faculties);
+            dirtyStudents.addAll(students);
+        }
+    }
+}
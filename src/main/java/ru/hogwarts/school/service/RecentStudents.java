@@ -0,0 +1,151 @@
+package ru.hogwarts.school.service;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.hogwarts.school.listener.StudentChangedEvent;
+import ru.hogwarts.school.model.StudentSnapshot;
+import ru.hogwarts.school.repositories.StudentRepository;
+
+// Keeps the newest students by id, highest first, which is the order findRecentSnapshots loads them in.
+// A student whose transaction commits after one with a higher id still takes its place by id.
+@Component
+public class RecentStudents {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecentStudents.class);
+
+    private static final int MAX_LOAD_ATTEMPTS = 5;
+
+    private final StudentRepository studentRepository;
+    private final int capacity;
+    private final AtomicLong version = new AtomicLong();
+    private final Object windowLock = new Object();
+    private volatile Window window;
+
+    public RecentStudents(StudentRepository studentRepository,
+                          @Value("${students.recent.capacity:50}") int capacity) {
+        this.studentRepository = studentRepository;
+        this.capacity = Math.max(1, capacity);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    // deletes shrink the window in place; it is refilled only once a reader asks for more than it still holds
+    public List<StudentSnapshot> latest(int count) {
+        int wanted = Math.min(count, capacity);
+        Window current = window;
+        if (current == null || current.isShort(wanted)) {
+            load();
+            current = window;
+        }
+        return current.latest(wanted);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStudentChanged(StudentChangedEvent event) {
+        synchronized (windowLock) {
+            version.incrementAndGet();
+            Window current = window;
+            if (current == null) {
+                return;
+            }
+            window = switch (event.type()) {
+                case CREATED -> current.insert(event.current(), capacity);
+                case UPDATED -> current.replace(event.current());
+                case DELETED -> current.remove(event.previous().id());
+            };
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void load() {
+        for (int attempt = 1; attempt <= MAX_LOAD_ATTEMPTS; attempt++) {
+            long startVersion = version.get();
+            List<StudentSnapshot> students = studentRepository.findRecentSnapshots(Limit.of(capacity));
+            Window loaded = new Window(students.toArray(StudentSnapshot[]::new), students.size() < capacity);
+            synchronized (windowLock) {
+                if (version.get() == startVersion || attempt == MAX_LOAD_ATTEMPTS) {
+                    window = loaded;
+                    logger.debug("Recent students loaded: {}", students.size());
+                    return;
+                }
+            }
+            logger.debug("Students changed while recent students were loading, retrying");
+        }
+    }
+
+    // an immutable copy of the newest students; while complete it holds every student there is,
+    // otherwise it holds exactly the newest ones down to its last entry
+    private record Window(StudentSnapshot[] students, boolean complete) {
+
+        boolean isShort(int count) {
+            return students.length < count && !complete;
+        }
+
+        List<StudentSnapshot> latest(int count) {
+            return List.of(students).subList(0, Math.min(count, students.length));
+        }
+
+        Window insert(StudentSnapshot student, int capacity) {
+            int position = 0;
+            while (position < students.length && students[position].id() > student.id()) {
+                position++;
+            }
+            if (position < students.length && students[position].id().equals(student.id())) {
+                return replace(student);
+            }
+            if (position == students.length && !complete) {
+                return this;
+            }
+            int length = Math.min(students.length + 1, capacity);
+            if (position >= length) {
+                return new Window(students, false);
+            }
+            StudentSnapshot[] inserted = new StudentSnapshot[length];
+            System.arraycopy(students, 0, inserted, 0, position);
+            inserted[position] = student;
+            System.arraycopy(students, position, inserted, position + 1, length - position - 1);
+            return new Window(inserted, complete && students.length < capacity);
+        }
+
+        Window replace(StudentSnapshot student) {
+            int position = indexOf(student.id());
+            if (position < 0) {
+                return this;
+            }
+            StudentSnapshot[] replaced = students.clone();
+            replaced[position] = student;
+            return new Window(replaced, complete);
+        }
+
+        Window remove(Long id) {
+            int position = indexOf(id);
+            if (position < 0) {
+                return this;
+            }
+            StudentSnapshot[] removed = new StudentSnapshot[students.length - 1];
+            System.arraycopy(students, 0, removed, 0, position);
+            System.arraycopy(students, position + 1, removed, position, removed.length - position);
+            return new Window(removed, complete);
+        }
+
+        private int indexOf(Long id) {
+            for (int i = 0; i < students.length; i++) {
+                if (students[i].id().equals(id)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
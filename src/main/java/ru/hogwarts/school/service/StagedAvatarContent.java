@@ -0,0 +1,4 @@
+package ru.hogwarts.school.service;
+
+public record StagedAvatarContent(byte[] data, String contentHash, long size) {
+}
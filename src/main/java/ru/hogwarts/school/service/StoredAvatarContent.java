@@ -0,0 +1,4 @@
+package ru.hogwarts.school.service;
+
+public record StoredAvatarContent(String contentHash, long size) {
+}
@@ -0,0 +1,270 @@
+package ru.hogwarts.school.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.hogwarts.school.listener.StudentChangedEvent;
+import ru.hogwarts.school.model.StudentAge;
+import ru.hogwarts.school.repositories.StudentRepository;
+
+@Component
+public class StudentAgeIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(StudentAgeIndex.class);
+
+    private static final int MAX_BUCKET_AGE = 150;
+
+    private final StudentRepository studentRepository;
+    private final int loadBatchSize;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object loadLock = new Object();
+    private Buckets buckets = new Buckets();
+    private List<StudentChangedEvent> pendingEvents;
+    private volatile boolean loaded;
+
+    public StudentAgeIndex(StudentRepository studentRepository,
+                           @Value("${students.age-index.load-batch-size:1000}") int loadBatchSize) {
+        this.studentRepository = studentRepository;
+        this.loadBatchSize = loadBatchSize;
+    }
+
+    public AgeRange find(int minAge, int maxAge, long offset, int limit) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            return buckets.find(minAge, maxAge, offset, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStudentChanged(StudentChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (pendingEvents != null) {
+                pendingEvents.add(event);
+            }
+            buckets.apply(event);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${students.age-index.reload-interval:PT15M}",
+            fixedDelayString = "${students.age-index.reload-interval:PT15M}")
+    public void load() {
+        synchronized (loadLock) {
+            long startTime = System.currentTimeMillis();
+            lock.writeLock().lock();
+            try {
+                pendingEvents = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            Buckets loading = new Buckets();
+            try {
+                long cursor = 0;
+                Slice<StudentAge> slice;
+                do {
+                    slice = studentRepository.findAgesAfter(cursor, PageRequest.of(0, loadBatchSize));
+                    for (StudentAge student : slice) {
+                        loading.add(student.id(), student.age());
+                        cursor = student.id();
+                    }
+                } while (slice.hasNext());
+            } catch (RuntimeException e) {
+                lock.writeLock().lock();
+                try {
+                    pendingEvents = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                throw e;
+            }
+
+            lock.writeLock().lock();
+            try {
+                for (StudentChangedEvent event : pendingEvents) {
+                    loading.apply(event);
+                }
+                pendingEvents = null;
+                buckets = loading;
+                loaded = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            logger.debug("Student age index loaded {} students in {} ms",
+                    loading.size(), System.currentTimeMillis() - startTime);
+        }
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            load();
+        }
+    }
+
+    public record AgeRange(long[] ids, long total) {
+    }
+
+    private static final class Buckets {
+
+        private final long[][] ids = new long[MAX_BUCKET_AGE + 1][];
+        private final int[] sizes = new int[MAX_BUCKET_AGE + 1];
+        private long[] outlierIds = new long[0];
+        private int[] outlierAges = new int[0];
+        private int outlierSize;
+        private long size;
+
+        void apply(StudentChangedEvent event) {
+            if (event.previous() != null) {
+                remove(event.previous().id(), event.previous().age());
+            }
+            if (event.current() != null) {
+                add(event.current().id(), event.current().age());
+            }
+        }
+
+        long size() {
+            return size;
+        }
+
+        void add(long id, int age) {
+            if (age < 0 || age > MAX_BUCKET_AGE) {
+                addOutlier(id, age);
+                return;
+            }
+            long[] bucket = ids[age];
+            int bucketSize = sizes[age];
+            if (bucket == null) {
+                bucket = new long[8];
+                ids[age] = bucket;
+            }
+            int position = bucketSize == 0 || bucket[bucketSize - 1] < id
+                    ? bucketSize
+                    : Arrays.binarySearch(bucket, 0, bucketSize, id);
+            if (position >= 0 && position < bucketSize) {
+                return;
+            }
+            int insertAt = position < 0 ? -position - 1 : position;
+            if (bucketSize == bucket.length) {
+                bucket = Arrays.copyOf(bucket, bucketSize + (bucketSize >> 1) + 1);
+                ids[age] = bucket;
+            }
+            System.arraycopy(bucket, insertAt, bucket, insertAt + 1, bucketSize - insertAt);
+            bucket[insertAt] = id;
+            sizes[age] = bucketSize + 1;
+            size++;
+        }
+
+        void remove(long id, int ageHint) {
+            if (removeFrom(id, ageHint)) {
+                return;
+            }
+            for (int age = 0; age <= MAX_BUCKET_AGE; age++) {
+                if (age != ageHint && removeFrom(id, age)) {
+                    return;
+                }
+            }
+            for (int i = 0; i < outlierSize; i++) {
+                if (outlierIds[i] == id) {
+                    outlierSize--;
+                    outlierIds[i] = outlierIds[outlierSize];
+                    outlierAges[i] = outlierAges[outlierSize];
+                    size--;
+                    return;
+                }
+            }
+        }
+
+        AgeRange find(int minAge, int maxAge, long offset, int limit) {
+            int from = Math.max(minAge, 0);
+            int to = Math.min(maxAge, MAX_BUCKET_AGE);
+
+            long total = 0;
+            for (int age = from; age <= to; age++) {
+                total += sizes[age];
+            }
+            long[] outliers = matchingOutliers(minAge, maxAge);
+            total += outliers.length;
+
+            long[] page = new long[(int) Math.max(0, Math.min(limit, total - offset))];
+            int filled = 0;
+            long skip = offset;
+            for (int age = from; age <= to && filled < page.length; age++) {
+                int bucketSize = sizes[age];
+                if (skip >= bucketSize) {
+                    skip -= bucketSize;
+                    continue;
+                }
+                int count = (int) Math.min(bucketSize - skip, page.length - filled);
+                System.arraycopy(ids[age], (int) skip, page, filled, count);
+                filled += count;
+                skip = 0;
+            }
+            if (filled < page.length) {
+                System.arraycopy(outliers, (int) skip, page, filled, page.length - filled);
+            }
+            return new AgeRange(page, total);
+        }
+
+        private boolean removeFrom(long id, int age) {
+            if (age < 0 || age > MAX_BUCKET_AGE || sizes[age] == 0) {
+                return false;
+            }
+            long[] bucket = ids[age];
+            int bucketSize = sizes[age];
+            int position = Arrays.binarySearch(bucket, 0, bucketSize, id);
+            if (position < 0) {
+                return false;
+            }
+            System.arraycopy(bucket, position + 1, bucket, position, bucketSize - position - 1);
+            sizes[age] = bucketSize - 1;
+            size--;
+            return true;
+        }
+
+        private void addOutlier(long id, int age) {
+            for (int i = 0; i < outlierSize; i++) {
+                if (outlierIds[i] == id) {
+                    return;
+                }
+            }
+            if (outlierSize == outlierIds.length) {
+                outlierIds = Arrays.copyOf(outlierIds, outlierSize * 2 + 1);
+                outlierAges = Arrays.copyOf(outlierAges, outlierSize * 2 + 1);
+            }
+            outlierIds[outlierSize] = id;
+            outlierAges[outlierSize] = age;
+            outlierSize++;
+            size++;
+        }
+
+        private long[] matchingOutliers(int minAge, int maxAge) {
+            long[] matching = new long[outlierSize];
+            int count = 0;
+            for (int i = 0; i < outlierSize; i++) {
+                if (outlierAges[i] >= minAge && outlierAges[i] <= maxAge) {
+                    matching[count++] = outlierIds[i];
+                }
+            }
+            return Arrays.copyOf(matching, count);
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package ru.hogwarts.school.service;
+
+import java.util.List;
+
+public record StudentBatchReport(int succeeded, int failed, List<StudentBatchResult> results) {
+}
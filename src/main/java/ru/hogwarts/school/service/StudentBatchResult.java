@@ -0,0 +1,22 @@
+package ru.hogwarts.school.service;
+
+public record StudentBatchResult(int index, Long studentId, Status status, String message) {
+
+    public enum Status {
+        SUCCEEDED,
+        NOT_FOUND,
+        FAILED
+    }
+
+    static StudentBatchResult succeeded(int index, Long studentId) {
+        return new StudentBatchResult(index, studentId, Status.SUCCEEDED, null);
+    }
+
+    static StudentBatchResult notFound(int index, Long studentId) {
+        return new StudentBatchResult(index, studentId, Status.NOT_FOUND, "Student not found");
+    }
+
+    static StudentBatchResult failed(int index, Long studentId, String message) {
+        return new StudentBatchResult(index, studentId, Status.FAILED, message);
+    }
+}
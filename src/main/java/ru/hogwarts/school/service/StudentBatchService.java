@@ -0,0 +1,253 @@
+package ru.hogwarts.school.service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repositories.AvatarBlobRepository;
+import ru.hogwarts.school.repositories.AvatarRepository;
+import ru.hogwarts.school.repositories.FacultyRepository;
+import ru.hogwarts.school.repositories.StudentRepository;
+
+@Service
+public class StudentBatchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StudentBatchService.class);
+
+    private final StudentRepository studentRepository;
+    private final FacultyRepository facultyRepository;
+    private final AvatarRepository avatarRepository;
+    private final AvatarBlobRepository avatarBlobRepository;
+    private final AvatarContentService avatarContentService;
+    private final AvatarByteCache avatarByteCache;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final int maxItems;
+
+    public StudentBatchService(StudentRepository studentRepository, FacultyRepository facultyRepository,
+                               AvatarRepository avatarRepository, AvatarBlobRepository avatarBlobRepository,
+                               AvatarContentService avatarContentService, AvatarByteCache avatarByteCache,
+                               EntityManager entityManager, PlatformTransactionManager transactionManager,
+                               @Value("${students.batch.chunk-size:500}") int chunkSize,
+                               @Value("${students.batch.max-items:10000}") int maxItems) {
+        this.studentRepository = studentRepository;
+        this.facultyRepository = facultyRepository;
+        this.avatarRepository = avatarRepository;
+        this.avatarBlobRepository = avatarBlobRepository;
+        this.avatarContentService = avatarContentService;
+        this.avatarByteCache = avatarByteCache;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.maxItems = maxItems;
+    }
+
+    public StudentBatchReport createStudents(List<Student> students) {
+        logger.info("Was invoked method for batch create of {} students", students.size());
+        checkSize(students.size());
+        return execute("create", students.size(), index -> null,
+                (from, to, results) -> createChunk(students, from, to, results));
+    }
+
+    public StudentBatchReport editStudents(List<Student> students) {
+        logger.info("Was invoked method for batch edit of {} students", students.size());
+        checkSize(students.size());
+        return execute("edit", students.size(), index -> students.get(index) == null ? null : students.get(index).getId(),
+                (from, to, results) -> editChunk(students, from, to, results));
+    }
+
+    public StudentBatchReport deleteStudents(List<Long> ids) {
+        logger.info("Was invoked method for batch delete of {} students", ids.size());
+        checkSize(ids.size());
+        return execute("delete", ids.size(), ids::get,
+                (from, to, results) -> deleteChunk(ids, from, to, results));
+    }
+
+    private void createChunk(List<Student> students, int from, int to, StudentBatchResult[] results) {
+        Map<Long, Faculty> faculties = findFaculties(students.subList(from, to));
+        for (int index = from; index < to; index++) {
+            Student student = students.get(index);
+            if (student == null) {
+                results[index] = StudentBatchResult.failed(index, null, "Student is empty");
+                continue;
+            }
+            String error = resolveFaculty(student, faculties);
+            if (error != null) {
+                results[index] = StudentBatchResult.failed(index, null, error);
+                continue;
+            }
+            student.setId(null);
+            entityManager.persist(student);
+            results[index] = StudentBatchResult.succeeded(index, student.getId());
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private void editChunk(List<Student> students, int from, int to, StudentBatchResult[] results) {
+        List<Student> chunk = students.subList(from, to);
+        Set<Long> ids = chunk.stream()
+                .filter(Objects::nonNull)
+                .map(Student::getId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<Long, Student> existing = studentRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Student::getId, Function.identity()));
+        Map<Long, Faculty> faculties = findFaculties(chunk);
+
+        for (int index = from; index < to; index++) {
+            Student student = students.get(index);
+            if (student == null || student.getId() == null) {
+                results[index] = StudentBatchResult.failed(index, null, "Student id is required");
+                continue;
+            }
+            Student target = existing.get(student.getId());
+            if (target == null) {
+                results[index] = StudentBatchResult.notFound(index, student.getId());
+                continue;
+            }
+            String error = resolveFaculty(student, faculties);
+            if (error != null) {
+                results[index] = StudentBatchResult.failed(index, student.getId(), error);
+                continue;
+            }
+            target.setName(student.getName());
+            target.setAge(student.getAge());
+            target.setFaculty(student.getFaculty());
+            results[index] = StudentBatchResult.succeeded(index, student.getId());
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private void deleteChunk(List<Long> ids, int from, int to, StudentBatchResult[] results) {
+        Set<Long> chunkIds = ids.subList(from, to).stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<Long, Student> existing = studentRepository.findAllById(chunkIds).stream()
+                .collect(Collectors.toMap(Student::getId, Function.identity()));
+
+        List<Avatar> avatars = existing.isEmpty() ? List.of() : avatarRepository.findAllByStudentIdIn(existing.keySet());
+        if (!avatars.isEmpty()) {
+            avatarBlobRepository.deleteAllByAvatarIdIn(avatars.stream().map(Avatar::getId).toList());
+            avatarRepository.deleteAll(avatars);
+        }
+
+        for (int index = from; index < to; index++) {
+            Long id = ids.get(index);
+            if (id == null) {
+                results[index] = StudentBatchResult.failed(index, null, "Student id is required");
+                continue;
+            }
+            Student student = existing.remove(id);
+            if (student == null) {
+                results[index] = StudentBatchResult.notFound(index, id);
+                continue;
+            }
+            studentRepository.delete(student);
+            results[index] = StudentBatchResult.succeeded(index, id);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        List<String> releasedHashes = avatars.stream().map(Avatar::getContentHash).toList();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                chunkIds.forEach(avatarByteCache::invalidate);
+                releasedHashes.forEach(avatarContentService::release);
+            }
+        });
+    }
+
+    private StudentBatchReport execute(String operation, int total, IntFunction<Long> idOf, ChunkAction action) {
+        long startTime = System.currentTimeMillis();
+        StudentBatchResult[] results = new StudentBatchResult[total];
+
+        for (int from = 0; from < total; from += chunkSize) {
+            int chunkFrom = from;
+            int chunkTo = Math.min(from + chunkSize, total);
+            try {
+                transactionTemplate.executeWithoutResult(status -> action.apply(chunkFrom, chunkTo, results));
+            } catch (RuntimeException e) {
+                logger.warn("Student batch {} failed for items {}-{}, retrying them one by one: {}",
+                        operation, chunkFrom, chunkTo - 1, e.getMessage());
+                Arrays.fill(results, chunkFrom, chunkTo, null);
+                for (int index = chunkFrom; index < chunkTo; index++) {
+                    int item = index;
+                    try {
+                        transactionTemplate.executeWithoutResult(status -> action.apply(item, item + 1, results));
+                    } catch (RuntimeException itemError) {
+                        results[item] = StudentBatchResult.failed(item, idOf.apply(item),
+                                NestedExceptionUtils.getMostSpecificCause(itemError).getMessage());
+                    }
+                }
+            }
+        }
+
+        List<StudentBatchResult> resultList = Arrays.asList(results);
+        int succeeded = (int) resultList.stream()
+                .filter(result -> result.status() == StudentBatchResult.Status.SUCCEEDED)
+                .count();
+        logger.info("Student batch {} finished: {} succeeded, {} failed in {} ms",
+                operation, succeeded, total - succeeded, System.currentTimeMillis() - startTime);
+        return new StudentBatchReport(succeeded, total - succeeded, resultList);
+    }
+
+    private Map<Long, Faculty> findFaculties(List<Student> students) {
+        Set<Long> ids = students.stream()
+                .filter(Objects::nonNull)
+                .map(Student::getFaculty)
+                .filter(Objects::nonNull)
+                .map(Faculty::getId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        return facultyRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Faculty::getId, Function.identity()));
+    }
+
+    private static String resolveFaculty(Student student, Map<Long, Faculty> faculties) {
+        if (student.getFaculty() == null) {
+            return null;
+        }
+        Faculty faculty = student.getFaculty().getId() == null ? null : faculties.get(student.getFaculty().getId());
+        if (faculty == null) {
+            return "Faculty not found";
+        }
+        student.setFaculty(faculty);
+        return null;
+    }
+
+    private void checkSize(int size) {
+        if (size > maxItems) {
+            throw new StudentBatchTooLargeException(maxItems);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ChunkAction {
+        void apply(int from, int to, StudentBatchResult[] results);
+    }
+}
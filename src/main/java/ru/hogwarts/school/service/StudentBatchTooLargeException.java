@@ -0,0 +1,8 @@
+package ru.hogwarts.school.service;
+
+public class StudentBatchTooLargeException extends RuntimeException {
+
+    public StudentBatchTooLargeException(int maxItems) {
+        super("Batch exceeds the limit of " + maxItems + " students");
+    }
+}
@@ -0,0 +1,144 @@
+package ru.hogwarts.school.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import jakarta.persistence.EntityManager;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.model.StudentExportRow;
+import ru.hogwarts.school.repositories.StudentRepository;
+
+@Service
+public class StudentExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StudentExportService.class);
+
+    private static final String CSV_HEADER = "id,name,age,facultyId,facultyName";
+
+    private final StudentRepository studentRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final Duration timeout;
+
+    public StudentExportService(StudentRepository studentRepository, EntityManager entityManager,
+                                ObjectMapper objectMapper, PlatformTransactionManager transactionManager,
+                                @Value("${students.export.chunk-size:500}") int chunkSize,
+                                @Value("${students.export.timeout:PT1H}") Duration timeout) {
+        this.studentRepository = studentRepository;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.chunkSize = chunkSize;
+        this.timeout = timeout;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    public void exportStudents(StudentExportFormat format, OutputStream out) throws IOException {
+        logger.info("Was invoked method for export students as {}", format);
+        long startTime = System.currentTimeMillis();
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        long exported;
+        try {
+            exported = transactionTemplate.execute(status -> {
+                // a query's cache hints only hold while it is being executed, not while its stream is consumed
+                entityManager.unwrap(Session.class).setCacheMode(CacheMode.IGNORE);
+                try (Stream<Student> students = studentRepository.streamAllWithFaculty()) {
+                    return format == StudentExportFormat.CSV
+                            ? writeCsv(students.iterator(), writer)
+                            : writeNdjson(students.iterator(), writer);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+        logger.debug("Exported {} students as {} in {} ms", exported, format, System.currentTimeMillis() - startTime);
+    }
+
+    private long writeNdjson(Iterator<Student> students, Writer writer) throws IOException {
+        long count = 0;
+        try (SequenceWriter sequence = objectMapper.writer()
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .withRootValueSeparator("\n")
+                .writeValues(writer)) {
+            while (students.hasNext()) {
+                sequence.write(StudentExportRow.of(students.next()));
+                if (++count % chunkSize == 0) {
+                    sequence.flush();
+                    entityManager.clear();
+                }
+            }
+            sequence.flush();
+        }
+        if (count > 0) {
+            writer.write('\n');
+        }
+        return count;
+    }
+
+    private long writeCsv(Iterator<Student> students, Writer writer) throws IOException {
+        long count = 0;
+        writer.write(CSV_HEADER);
+        writer.write('\n');
+        while (students.hasNext()) {
+            StudentExportRow row = StudentExportRow.of(students.next());
+            writer.write(String.valueOf(row.id()));
+            writer.write(',');
+            writer.write(csv(row.name()));
+            writer.write(',');
+            writer.write(String.valueOf(row.age()));
+            writer.write(',');
+            writer.write(row.facultyId() == null ? "" : String.valueOf(row.facultyId()));
+            writer.write(',');
+            writer.write(csv(row.facultyName()));
+            writer.write('\n');
+            if (++count % chunkSize == 0) {
+                endChunk(writer);
+            }
+        }
+        return count;
+    }
+
+    private void endChunk(Writer writer) throws IOException {
+        writer.flush();
+        entityManager.clear();
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
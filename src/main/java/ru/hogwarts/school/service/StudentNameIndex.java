@@ -0,0 +1,460 @@
+package ru.hogwarts.school.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.hogwarts.school.listener.StudentChangedEvent;
+import ru.hogwarts.school.model.StudentName;
+import ru.hogwarts.school.model.StudentNameMatch;
+import ru.hogwarts.school.repositories.StudentRepository;
+
+@Component
+public class StudentNameIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(StudentNameIndex.class);
+
+    private final StudentRepository studentRepository;
+    private final int loadBatchSize;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object loadLock = new Object();
+    private Trie trie = new Trie();
+    private List<StudentChangedEvent> pendingEvents;
+    private volatile boolean loaded;
+
+    public StudentNameIndex(StudentRepository studentRepository,
+                            @Value("${students.name-index.load-batch-size:1000}") int loadBatchSize) {
+        this.studentRepository = studentRepository;
+        this.loadBatchSize = loadBatchSize;
+    }
+
+    public List<StudentNameMatch> complete(String prefix, int limit) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            return trie.complete(normalize(prefix), limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public StudentNameIndexStats stats() {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            return trie.stats();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStudentChanged(StudentChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (pendingEvents != null) {
+                pendingEvents.add(event);
+            }
+            trie.apply(event);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${students.name-index.reload-interval:PT15M}",
+            fixedDelayString = "${students.name-index.reload-interval:PT15M}")
+    public void load() {
+        synchronized (loadLock) {
+            long startTime = System.currentTimeMillis();
+            lock.writeLock().lock();
+            try {
+                pendingEvents = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            Trie loading = new Trie();
+            try {
+                long cursor = 0;
+                Slice<StudentName> slice;
+                do {
+                    slice = studentRepository.findNamesAfter(cursor, PageRequest.of(0, loadBatchSize));
+                    for (StudentName student : slice) {
+                        loading.add(student.id(), student.name());
+                        cursor = student.id();
+                    }
+                } while (slice.hasNext());
+            } catch (RuntimeException e) {
+                lock.writeLock().lock();
+                try {
+                    pendingEvents = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                throw e;
+            }
+
+            lock.writeLock().lock();
+            try {
+                for (StudentChangedEvent event : pendingEvents) {
+                    loading.apply(event);
+                }
+                pendingEvents = null;
+                loading.trim();
+                trie = loading;
+                loaded = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            logger.debug("Student name index loaded {} names in {} ms",
+                    loading.names, System.currentTimeMillis() - startTime);
+        }
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            load();
+        }
+    }
+
+    private static String normalize(String name) {
+        return name == null ? "" : name.toLowerCase(Locale.ROOT);
+    }
+
+    // removed entries and emptied nodes go onto free lists that later adds reuse, and an
+    // open-addressing table from student id to entry finds what to remove without a scan
+    private static final class Trie {
+
+        private static final int ROOT = 0;
+        private static final int NONE = -1;
+
+        private char[] label = new char[64];
+        private int[] parent = new int[64];
+        private int[] firstChild = new int[64];
+        private int[] nextSibling = new int[64];
+        private int[] firstEntry = new int[64];
+        private int[] liveCount = new int[64];
+        private int nodes;
+        private int liveNodes;
+        private int freeNode = NONE;
+
+        private long[] entryIds = new long[16];
+        private String[] entryNames = new String[16];
+        private int[] entryNode = new int[16];
+        private int[] entryNext = new int[16];
+        private int entries;
+        private int freeEntry = NONE;
+
+        // slots hold entry + 1 so that zero marks an empty slot
+        private long[] slotIds = new long[32];
+        private int[] slotEntries = new int[32];
+
+        private int names;
+        private long nameBytes;
+
+        Trie() {
+            newNode(ROOT, '\0');
+            parent[ROOT] = NONE;
+        }
+
+        void apply(StudentChangedEvent event) {
+            if (event.previous() != null) {
+                remove(event.previous().id());
+            }
+            if (event.current() != null) {
+                add(event.current().id(), event.current().name());
+            }
+        }
+
+        void add(long id, String name) {
+            if (name == null) {
+                return;
+            }
+            String key = normalize(name);
+            int existing = findEntry(id);
+            if (existing != NONE) {
+                if (name.equals(entryNames[existing])) {
+                    return;
+                }
+                remove(id);
+            }
+            int node = ROOT;
+            for (int i = 0; i < key.length(); i++) {
+                node = child(node, key.charAt(i), true);
+            }
+
+            int entry = newEntry();
+            entryIds[entry] = id;
+            entryNames[entry] = name;
+            entryNode[entry] = node;
+            entryNext[entry] = firstEntry[node];
+            firstEntry[node] = entry;
+            putEntry(id, entry);
+            updateLiveCount(node, 1);
+            names++;
+            nameBytes += stringBytes(name);
+        }
+
+        void remove(long id) {
+            int entry = findEntry(id);
+            if (entry == NONE) {
+                return;
+            }
+            int node = entryNode[entry];
+            int previous = NONE;
+            for (int current = firstEntry[node]; current != entry; current = entryNext[current]) {
+                previous = current;
+            }
+            if (previous == NONE) {
+                firstEntry[node] = entryNext[entry];
+            } else {
+                entryNext[previous] = entryNext[entry];
+            }
+            removeSlot(id);
+            nameBytes -= stringBytes(entryNames[entry]);
+            entryNames[entry] = null;
+            entryNode[entry] = NONE;
+            entryNext[entry] = freeEntry;
+            freeEntry = entry;
+            updateLiveCount(node, -1);
+            names--;
+            prune(node);
+        }
+
+        void trim() {
+            label = Arrays.copyOf(label, nodes);
+            parent = Arrays.copyOf(parent, nodes);
+            firstChild = Arrays.copyOf(firstChild, nodes);
+            nextSibling = Arrays.copyOf(nextSibling, nodes);
+            firstEntry = Arrays.copyOf(firstEntry, nodes);
+            liveCount = Arrays.copyOf(liveCount, nodes);
+            int capacity = Math.max(entries, 1);
+            entryIds = Arrays.copyOf(entryIds, capacity);
+            entryNames = Arrays.copyOf(entryNames, capacity);
+            entryNode = Arrays.copyOf(entryNode, capacity);
+            entryNext = Arrays.copyOf(entryNext, capacity);
+            rehash(slotCapacity(names));
+        }
+
+        List<StudentNameMatch> complete(String prefix, int limit) {
+            int node = ROOT;
+            for (int i = 0; i < prefix.length() && node != NONE; i++) {
+                node = child(node, prefix.charAt(i), false);
+            }
+            List<StudentNameMatch> matches = new ArrayList<>(Math.min(limit, 64));
+            if (node != NONE) {
+                collect(node, limit, matches);
+            }
+            return matches;
+        }
+
+        StudentNameIndexStats stats() {
+            long nodeBytes = (long) liveNodes * (Character.BYTES + Integer.BYTES * 5);
+            long entryBytes = (long) names * (Long.BYTES + Integer.BYTES * 2 + 4);
+            long slotBytes = (long) slotIds.length * (Long.BYTES + Integer.BYTES);
+            long totalBytes = nodeBytes + entryBytes + slotBytes + nameBytes;
+            return new StudentNameIndexStats(names, liveNodes, totalBytes,
+                    names == 0 ? 0.0 : (double) totalBytes / names);
+        }
+
+        private void collect(int node, int limit, List<StudentNameMatch> matches) {
+            if (liveCount[node] == 0) {
+                return;
+            }
+            int start = matches.size();
+            for (int entry = firstEntry[node]; entry != NONE; entry = entryNext[entry]) {
+                matches.add(new StudentNameMatch(entryIds[entry], entryNames[entry]));
+            }
+            if (matches.size() - start > 1) {
+                matches.subList(start, matches.size()).sort((left, right) -> Long.compare(left.id(), right.id()));
+            }
+            if (matches.size() >= limit) {
+                matches.subList(limit, matches.size()).clear();
+                return;
+            }
+            for (int next = firstChild[node]; next != NONE && matches.size() < limit; next = nextSibling[next]) {
+                collect(next, limit, matches);
+            }
+        }
+
+        // a node without live entries below it has no children left either, since they were pruned first
+        private void prune(int node) {
+            while (node != ROOT && liveCount[node] == 0) {
+                int parentNode = parent[node];
+                int previous = NONE;
+                for (int current = firstChild[parentNode]; current != node; current = nextSibling[current]) {
+                    previous = current;
+                }
+                if (previous == NONE) {
+                    firstChild[parentNode] = nextSibling[node];
+                } else {
+                    nextSibling[previous] = nextSibling[node];
+                }
+                parent[node] = NONE;
+                nextSibling[node] = freeNode;
+                freeNode = node;
+                liveNodes--;
+                node = parentNode;
+            }
+        }
+
+        private int child(int node, char c, boolean create) {
+            int previous = NONE;
+            int next = firstChild[node];
+            while (next != NONE && label[next] < c) {
+                previous = next;
+                next = nextSibling[next];
+            }
+            if (next != NONE && label[next] == c) {
+                return next;
+            }
+            if (!create) {
+                return NONE;
+            }
+            int created = newNode(node, c);
+            nextSibling[created] = next;
+            if (previous == NONE) {
+                firstChild[node] = created;
+            } else {
+                nextSibling[previous] = created;
+            }
+            return created;
+        }
+
+        private int newNode(int parentNode, char c) {
+            int node;
+            if (freeNode != NONE) {
+                node = freeNode;
+                freeNode = nextSibling[node];
+            } else {
+                if (nodes == label.length) {
+                    int capacity = nodes * 2;
+                    label = Arrays.copyOf(label, capacity);
+                    parent = Arrays.copyOf(parent, capacity);
+                    firstChild = Arrays.copyOf(firstChild, capacity);
+                    nextSibling = Arrays.copyOf(nextSibling, capacity);
+                    firstEntry = Arrays.copyOf(firstEntry, capacity);
+                    liveCount = Arrays.copyOf(liveCount, capacity);
+                }
+                node = nodes++;
+            }
+            label[node] = c;
+            parent[node] = parentNode;
+            firstChild[node] = NONE;
+            nextSibling[node] = NONE;
+            firstEntry[node] = NONE;
+            liveCount[node] = 0;
+            liveNodes++;
+            return node;
+        }
+
+        private int newEntry() {
+            if (freeEntry != NONE) {
+                int entry = freeEntry;
+                freeEntry = entryNext[entry];
+                return entry;
+            }
+            if (entries == entryIds.length) {
+                int capacity = entries * 2;
+                entryIds = Arrays.copyOf(entryIds, capacity);
+                entryNames = Arrays.copyOf(entryNames, capacity);
+                entryNode = Arrays.copyOf(entryNode, capacity);
+                entryNext = Arrays.copyOf(entryNext, capacity);
+            }
+            return entries++;
+        }
+
+        private void updateLiveCount(int node, int delta) {
+            for (int current = node; current != NONE; current = parent[current]) {
+                liveCount[current] += delta;
+            }
+        }
+
+        private int findEntry(long id) {
+            int mask = slotIds.length - 1;
+            for (int slot = slot(id, mask); slotEntries[slot] != 0; slot = (slot + 1) & mask) {
+                if (slotIds[slot] == id) {
+                    return slotEntries[slot] - 1;
+                }
+            }
+            return NONE;
+        }
+
+        private void putEntry(long id, int entry) {
+            if ((names + 1) * 2 > slotIds.length) {
+                rehash(slotIds.length * 2);
+            }
+            int mask = slotIds.length - 1;
+            int slot = slot(id, mask);
+            while (slotEntries[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slotIds[slot] = id;
+            slotEntries[slot] = entry + 1;
+        }
+
+        // backward-shift deletion keeps every probe chain unbroken without tombstones
+        private void removeSlot(long id) {
+            int mask = slotIds.length - 1;
+            int hole = slot(id, mask);
+            while (slotIds[hole] != id || slotEntries[hole] == 0) {
+                hole = (hole + 1) & mask;
+            }
+            for (int next = (hole + 1) & mask; slotEntries[next] != 0; next = (next + 1) & mask) {
+                int home = slot(slotIds[next], mask);
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    slotIds[hole] = slotIds[next];
+                    slotEntries[hole] = slotEntries[next];
+                    hole = next;
+                }
+            }
+            slotEntries[hole] = 0;
+        }
+
+        private void rehash(int capacity) {
+            long[] oldIds = slotIds;
+            int[] oldEntries = slotEntries;
+            slotIds = new long[capacity];
+            slotEntries = new int[capacity];
+            int mask = capacity - 1;
+            for (int i = 0; i < oldIds.length; i++) {
+                if (oldEntries[i] != 0) {
+                    int slot = slot(oldIds[i], mask);
+                    while (slotEntries[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    slotIds[slot] = oldIds[i];
+                    slotEntries[slot] = oldEntries[i];
+                }
+            }
+        }
+
+        private static int slotCapacity(int size) {
+            return Math.max(32, Integer.highestOneBit(Math.max(size, 1) * 2 - 1) << 1);
+        }
+
+        private static int slot(long id, int mask) {
+            return (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+        }
+
+        private static long stringBytes(String value) {
+            boolean latin1 = value.chars().allMatch(c -> c <= 0xFF);
+            long arrayBytes = 16 + (long) value.length() * (latin1 ? 1 : 2);
+            return 24 + ((arrayBytes + 7) & ~7L);
+        }
+    }
+}
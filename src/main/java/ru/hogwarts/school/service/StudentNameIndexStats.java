@@ -0,0 +1,4 @@
+package ru.hogwarts.school.service;
+
+public record StudentNameIndexStats(int names, int nodes, long bytes, double bytesPerName) {
+}
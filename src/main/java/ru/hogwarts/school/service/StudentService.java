@@ -1,25 +1,33 @@
 package ru.hogwarts.school.service;
 
-import static java.nio.file.StandardOpenOption.CREATE_NEW;
-
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 import ru.hogwarts.school.model.Avatar;
 import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.model.StudentNameMatch;
+import ru.hogwarts.school.model.StudentSnapshot;
+import ru.hogwarts.school.repositories.AvatarBlobRepository;
 import ru.hogwarts.school.repositories.AvatarRepository;
 import ru.hogwarts.school.repositories.StudentRepository;
 
@@ -28,17 +36,41 @@ public class StudentService {
 
     private static final Logger logger = LoggerFactory.getLogger(StudentService.class);
 
-
-    @Value("${avatars.dir.path}")
-    private String avatarsDir;
-
     private final StudentRepository studentRepository;
     private final AvatarRepository avatarRepository;
-
-    public StudentService(StudentRepository studentRepository, AvatarRepository avatarRepository) {
+    private final AvatarBlobRepository avatarBlobRepository;
+    private final AvatarContentService avatarContentService;
+    private final AvatarService avatarService;
+    private final AvatarByteCache avatarByteCache;
+    private final StudentStatistics studentStatistics;
+    private final StudentAgeIndex studentAgeIndex;
+    private final StudentNameIndex studentNameIndex;
+    private final RecentStudents recentStudents;
+    private final FacultyCatalog facultyCatalog;
+    private final TransactionTemplate transactionTemplate;
+    private final int resolveBatchSize;
+
+    public StudentService(StudentRepository studentRepository, AvatarRepository avatarRepository,
+                          AvatarBlobRepository avatarBlobRepository, AvatarContentService avatarContentService,
+                          AvatarService avatarService, AvatarByteCache avatarByteCache,
+                          StudentStatistics studentStatistics, StudentAgeIndex studentAgeIndex,
+                          StudentNameIndex studentNameIndex, RecentStudents recentStudents,
+                          FacultyCatalog facultyCatalog, PlatformTransactionManager transactionManager,
+                          @Value("${students.age-index.resolve-batch-size:50}") int resolveBatchSize) {
         this.studentRepository = studentRepository;
         this.avatarRepository = avatarRepository;
-        logger.info("StudentService initialized with avatars directory: {}", avatarsDir);
+        this.avatarBlobRepository = avatarBlobRepository;
+        this.avatarContentService = avatarContentService;
+        this.avatarService = avatarService;
+        this.avatarByteCache = avatarByteCache;
+        this.studentStatistics = studentStatistics;
+        this.studentAgeIndex = studentAgeIndex;
+        this.studentNameIndex = studentNameIndex;
+        this.recentStudents = recentStudents;
+        this.facultyCatalog = facultyCatalog;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.resolveBatchSize = resolveBatchSize;
+        logger.info("StudentService initialized");
     }
 
     public Student addStudent(Student student) {
@@ -55,7 +87,7 @@ public class StudentService {
         logger.info("Was invoked method for get student by id: {}", id);
         logger.debug("Searching for student with id: {}", id);
 
-        Student student = studentRepository.findById(id).orElse(null);
+        Student student = studentRepository.findWithFacultyById(id).orElse(null);
 
         if (student == null) {
             logger.error("Student with id = {} was not found", id);
@@ -87,13 +119,25 @@ public class StudentService {
     public void deleteStudent(long id) {
         logger.info("Was invoked method for delete student with id: {}", id);
 
-        if (!studentRepository.existsById(id)) {
+        boolean deleted = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            if (!studentRepository.existsById(id)) {
+                return false;
+            }
+            avatarRepository.findByStudentId(id).ifPresent(existing -> {
+                avatarBlobRepository.deleteById(existing.getId());
+                avatarRepository.delete(existing);
+                avatarContentService.releaseAfterCommit(existing.getContentHash());
+                logger.debug("Deleted avatar {} of student {}", existing.getId(), id);
+            });
+            studentRepository.deleteById(id);
+            return true;
+        }));
+        if (!deleted) {
             logger.error("Cannot delete. Student with id = {} was not found", id);
             logger.warn("Attempt to delete non-existent student with id: {}", id);
             return;
         }
-
-        studentRepository.deleteById(id);
+        avatarByteCache.invalidate(id);
         logger.info("Student with id {} was successfully deleted", id);
         logger.debug("Student deletion completed for id: {}", id);
     }
@@ -113,6 +157,30 @@ public class StudentService {
         return students;
     }
 
+    public Page<Student> findByAgeRange(int minAge, int maxAge, int page, int size) {
+        logger.info("Was invoked method for find students by age range: {}-{}", minAge, maxAge);
+
+        StudentAgeIndex.AgeRange range = studentAgeIndex.find(minAge, maxAge, (long) page * size, size);
+        long[] ids = range.ids();
+        List<Student> students = new ArrayList<>(ids.length);
+        for (int from = 0; from < ids.length; from += resolveBatchSize) {
+            long[] batch = Arrays.copyOfRange(ids, from, Math.min(from + resolveBatchSize, ids.length));
+            Map<Long, Student> resolved = studentRepository.findAllWithFacultyByIdIn(Arrays.stream(batch).boxed().toList())
+                    .stream()
+                    .collect(Collectors.toMap(Student::getId, Function.identity()));
+            for (long id : batch) {
+                Student student = resolved.get(id);
+                if (student != null) {
+                    students.add(student);
+                }
+            }
+        }
+
+        logger.debug("Found {} of {} students with age between {} and {}", students.size(), range.total(),
+                minAge, maxAge);
+        return new PageImpl<>(students, PageRequest.of(page, size), range.total());
+    }
+
     public Avatar findAvatar(long studentId) {
         logger.info("Was invoked method for find avatar by student id: {}", studentId);
         logger.debug("Searching for avatar of student with id: {}", studentId);
@@ -123,63 +191,21 @@ public class StudentService {
             logger.warn("Avatar for student with id = {} was not found", studentId);
             logger.debug("No avatar record found in database for student id: {}", studentId);
         } else {
-            logger.debug("Found avatar: id={}, filePath={}, fileSize={} bytes",
-                    avatar.getId(), avatar.getFilePath(), avatar.getFileSize());
+            logger.debug("Found avatar: id={}, contentHash={}, fileSize={} bytes",
+                    avatar.getId(), avatar.getContentHash(), avatar.getFileSize());
         }
 
         return avatar;
     }
 
     public void uploadAvatar(Long studentId, MultipartFile file) throws IOException {
-        logger.info("Was invoked method for upload avatar for student id: {}", studentId);
-        logger.debug("Uploading avatar file: originalFilename={}, size={} bytes, contentType={}",
-                file.getOriginalFilename(), file.getSize(), file.getContentType());
-        Student student = findStudent(studentId);
-
-        Path filePath = Path.of(avatarsDir, studentId + "." + getExtension(file.getOriginalFilename()));
-        Files.createDirectories(filePath.getParent());
-        Files.deleteIfExists(filePath);
-
-        try (InputStream is = file.getInputStream();
-             OutputStream os = Files.newOutputStream(filePath, CREATE_NEW);
-             BufferedInputStream bis = new BufferedInputStream(is, 1024);
-             BufferedOutputStream bos = new BufferedOutputStream(os, 1024)
-        ) {
-            bis.transferTo(bos);
-            logger.debug("Avatar file successfully written to disk: {}", filePath);
-        } catch (IOException e) {
-            logger.error("Error while saving avatar file for student id {}: {}", studentId, e.getMessage());
-            throw e;
-        }
-
-        Avatar avatar = avatarRepository.findByStudentId(studentId).orElseGet(Avatar::new);
-        avatar.setStudent(student);
-        avatar.setFilePath(filePath.toString());
-        avatar.setFileSize(file.getSize());
-        avatar.setMediaType(file.getContentType());
-        avatar.setData(file.getBytes());
-
-        Avatar savedAvatar = avatarRepository.save(avatar);
-        logger.info("Avatar successfully uploaded for student id: {}", studentId);
-        logger.debug("Avatar saved with id: {}, filePath: {}", savedAvatar.getId(), savedAvatar.getFilePath());
-    }
-
-    private String getExtension(String fileName) {
-        logger.debug("Extracting extension from filename: {}", fileName);
-        if (fileName == null || fileName.lastIndexOf(".") == -1) {
-            logger.warn("Filename '{}' has no extension or is null", fileName);
-            return "bin";
-        }
-
-        String extension = fileName.substring(fileName.lastIndexOf(".") + 1);
-        logger.debug("Extracted extension: {}", extension);
-        return extension;
+        avatarService.uploadAvatar(studentId, file);
     }
 
     public Integer getTotalCountOfStudents() {
         logger.info("Was invoked method for get total count of students");
 
-        Integer count = studentRepository.getTotalCountOfStudents();
+        Integer count = Math.toIntExact(studentStatistics.count());
         logger.debug("Total student count: {}", count);
 
         if (count == 0) {
@@ -192,7 +218,8 @@ public class StudentService {
     public Double getAverageAgeOfStudents() {
         logger.info("Was invoked method for get average age of students");
 
-        Double averageAge = studentRepository.getAverageAgeOfStudents();
+        OptionalDouble average = studentStatistics.averageAge();
+        Double averageAge = average.isPresent() ? average.getAsDouble() : null;
         logger.debug("Calculated average age: {}", averageAge);
 
         if (averageAge == null) {
@@ -202,47 +229,96 @@ public class StudentService {
         return averageAge;
     }
 
-    public List<Student> getLastFiveStudents() {
-        logger.info("Was invoked method for get last five students");
+    public List<Student> getLastStudents(int count) {
+        logger.info("Was invoked method for get last {} students", count);
 
-        List<Student> students = studentRepository.findLastFiveStudents();
+        List<Student> students = recentStudents.latest(count).stream()
+                .map(this::toStudent)
+                .toList();
         logger.debug("Retrieved {} last students", students.size());
 
         if (students.isEmpty()) {
-            logger.warn("No students found when retrieving last five");
-        } else if (students.size() < 5) {
-            logger.debug("Retrieved only {} students (less than 5)", students.size());
+            logger.warn("No students found when retrieving last {}", count);
+        } else if (students.size() < count) {
+            logger.debug("Retrieved only {} students (less than {})", students.size(), count);
         }
 
         return students;
     }
 
+    public int getRecentStudentsCapacity() {
+        return recentStudents.capacity();
+    }
+
+    private Student toStudent(StudentSnapshot snapshot) {
+        Student student = new Student(snapshot.name(), snapshot.age());
+        student.setId(snapshot.id());
+        if (snapshot.facultyId() != null) {
+            student.setFaculty(facultyCatalog.find(snapshot.facultyId()).orElse(null));
+        }
+        return student;
+    }
+
     public List<String> getStudentNamesStartingWithASorted() {
         logger.info("Was invoked method for get student names starting with A");
 
-        List<String> result = studentRepository.findAll().stream()
-                .map(Student::getName)
+        List<String> result = studentRepository.findNamesByUpperNameLike(prefixPattern("A"), Limit.unlimited())
+                .stream()
                 .map(String::toUpperCase)
-                .filter(upperCase -> upperCase.startsWith("A"))
-                .sorted()
                 .toList();
 
         logger.debug("Found {} students with names starting with A", result.size());
         return result;
     }
 
+    public List<String> getStudentNamesByPrefix(String prefix, int limit) {
+        logger.info("Was invoked method for get student names by prefix: {}", prefix);
+
+        List<String> result = studentRepository.findNamesByUpperNameLike(prefixPattern(prefix), Limit.of(limit));
+
+        logger.debug("Found {} student names with prefix {}", result.size(), prefix);
+        return result;
+    }
+
+    public List<StudentNameMatch> autocompleteNames(String query, int limit) {
+        logger.info("Was invoked method for autocomplete student names: {}", query);
+
+        List<StudentNameMatch> result = studentNameIndex.complete(query, limit);
+
+        logger.debug("Found {} student name completions for {}", result.size(), query);
+        return result;
+    }
+
+    public StudentNameIndexStats getNameIndexStats() {
+        logger.info("Was invoked method for get student name index stats");
+        return studentNameIndex.stats();
+    }
+
+    private static String prefixPattern(String prefix) {
+        StringBuilder pattern = new StringBuilder(prefix.length() + 1);
+        for (char c : prefix.toUpperCase(Locale.ROOT).toCharArray()) {
+            if (c == '!' || c == '%' || c == '_') {
+                pattern.append('!');
+            }
+            pattern.append(c);
+        }
+        return pattern.append('%').toString();
+    }
+
     public Double getAverageAgeOfAllStudents() {
         logger.info("Was invoked method for get average age of all students");
 
-        Double averageAge = studentRepository.findAll().stream()
-                .mapToInt(Student::getAge)
-                .average()
-                .orElse(0.0);
+        Double averageAge = studentStatistics.averageAge().orElse(0.0);
 
         logger.debug("Calculated average age: {}", averageAge);
         return averageAge;
     }
 
+    public Map<Integer, Long> getAgeHistogram() {
+        logger.info("Was invoked method for get student age histogram");
+        return studentStatistics.ageHistogram();
+    }
+
     public Integer calculateSumOptimized() {
         logger.info("Was invoked method for calculate optimized sum");
 
@@ -0,0 +1,164 @@
+package ru.hogwarts.school.service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.hogwarts.school.listener.StudentChangedEvent;
+import ru.hogwarts.school.model.AgeCount;
+import ru.hogwarts.school.model.StudentSnapshot;
+import ru.hogwarts.school.repositories.StudentRepository;
+
+@Component
+public class StudentStatistics {
+
+    private static final Logger logger = LoggerFactory.getLogger(StudentStatistics.class);
+
+    private static final int MAX_TRACKED_AGE = 150;
+    private static final int MAX_LOAD_ATTEMPTS = 5;
+
+    private final StudentRepository studentRepository;
+    private final Object lock = new Object();
+    private long[] ageCounts = new long[MAX_TRACKED_AGE + 1];
+    // ages outside 0..MAX_TRACKED_AGE are rare but valid, so they are counted exactly instead of clamped
+    private Map<Integer, Long> overflowCounts = new HashMap<>();
+    private long version;
+    private volatile Totals totals = new Totals(0, 0);
+    private volatile boolean loaded;
+
+    public StudentStatistics(StudentRepository studentRepository) {
+        this.studentRepository = studentRepository;
+    }
+
+    public long count() {
+        ensureLoaded();
+        return totals.count();
+    }
+
+    public OptionalDouble averageAge() {
+        ensureLoaded();
+        Totals current = totals;
+        return current.count() == 0
+                ? OptionalDouble.empty()
+                : OptionalDouble.of((double) current.ageSum() / current.count());
+    }
+
+    public Map<Integer, Long> ageHistogram() {
+        ensureLoaded();
+        Map<Integer, Long> histogram = new TreeMap<>();
+        synchronized (lock) {
+            for (int age = 0; age < ageCounts.length; age++) {
+                if (ageCounts[age] > 0) {
+                    histogram.put(age, ageCounts[age]);
+                }
+            }
+            histogram.putAll(overflowCounts);
+        }
+        return histogram;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStudentChanged(StudentChangedEvent event) {
+        synchronized (lock) {
+            if (event.previous() != null) {
+                apply(event.previous(), -1);
+            }
+            if (event.current() != null) {
+                apply(event.current(), 1);
+            }
+            version++;
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        for (int attempt = 1; attempt <= MAX_LOAD_ATTEMPTS; attempt++) {
+            if (reconcile(false)) {
+                loaded = true;
+                return;
+            }
+        }
+        logger.warn("Students kept changing while statistics were loading, the next reconcile will correct them");
+        reconcile(true);
+        loaded = true;
+    }
+
+    @Scheduled(initialDelayString = "${students.statistics.reconcile-interval:PT5M}",
+            fixedDelayString = "${students.statistics.reconcile-interval:PT5M}")
+    public void scheduledReconcile() {
+        if (reconcile(false)) {
+            loaded = true;
+        }
+    }
+
+    private boolean reconcile(boolean force) {
+        long startVersion;
+        synchronized (lock) {
+            startVersion = version;
+        }
+
+        List<AgeCount> rows = studentRepository.countByAge();
+        long[] counts = new long[MAX_TRACKED_AGE + 1];
+        Map<Integer, Long> overflow = new HashMap<>();
+        long count = 0;
+        long ageSum = 0;
+        for (AgeCount row : rows) {
+            add(counts, overflow, row.age(), row.count());
+            count += row.count();
+            ageSum += (long) row.age() * row.count();
+        }
+
+        synchronized (lock) {
+            if (version != startVersion && !force) {
+                logger.debug("Students changed during statistics reconcile, skipping");
+                return false;
+            }
+            Totals current = totals;
+            if (loaded && (current.count() != count || current.ageSum() != ageSum)) {
+                logger.warn("Student statistics drifted from the database: count {} -> {}, age sum {} -> {}",
+                        current.count(), count, current.ageSum(), ageSum);
+            }
+            ageCounts = counts;
+            overflowCounts = overflow;
+            totals = new Totals(count, ageSum);
+        }
+        logger.debug("Student statistics reconciled: {} students", count);
+        return true;
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    load();
+                }
+            }
+        }
+    }
+
+    private void apply(StudentSnapshot student, int delta) {
+        add(ageCounts, overflowCounts, student.age(), delta);
+        Totals current = totals;
+        totals = new Totals(current.count() + delta, current.ageSum() + (long) delta * student.age());
+    }
+
+    private static void add(long[] counts, Map<Integer, Long> overflow, int age, long delta) {
+        if (age >= 0 && age <= MAX_TRACKED_AGE) {
+            counts[age] += delta;
+        } else {
+            overflow.merge(age, delta, (a, b) -> a + b == 0 ? null : a + b);
+        }
+    }
+
+    private record Totals(long count, long ageSum) {
+    }
+}
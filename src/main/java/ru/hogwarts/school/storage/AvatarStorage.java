@@ -0,0 +1,41 @@
+package ru.hogwarts.school.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+public interface AvatarStorage {
+
+    boolean exists(String key) throws IOException;
+
+    long size(String key) throws IOException;
+
+    InputStream openStream(String key) throws IOException;
+
+    Optional<Path> localFile(String key) throws IOException;
+
+    void put(String key, Path source) throws IOException;
+
+    void delete(String key) throws IOException;
+
+    default Optional<ByteBuffer> mappedView(String key) throws IOException {
+        return Optional.empty();
+    }
+
+    default Optional<Resource> find(String key) throws IOException {
+        Optional<Path> localFile = localFile(key);
+        if (localFile.isPresent()) {
+            return Optional.of(new FileSystemResource(localFile.get()));
+        }
+        long size = size(key);
+        if (size < 0) {
+            return Optional.empty();
+        }
+        return Optional.of(new AvatarStorageResource(this, key, size));
+    }
+}
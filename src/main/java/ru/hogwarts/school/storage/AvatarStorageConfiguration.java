@@ -0,0 +1,42 @@
+package ru.hogwarts.school.storage;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.hogwarts.school.repositories.AvatarChunkRepository;
+
+@Configuration
+public class AvatarStorageConfiguration {
+
+    private static final Logger logger = LoggerFactory.getLogger(AvatarStorageConfiguration.class);
+
+    @Bean
+    public AvatarStorage avatarStorage(@Value("${avatars.storage.type:filesystem}") String type,
+                                       @Value("${avatars.storage.path:${avatars.dir.path}/sha256}") String path,
+                                       @Value("${avatars.storage.segment.path:${avatars.dir.path}/segments}") String segmentPath,
+                                       @Value("${avatars.storage.segment.max-size:67108864}") long segmentMaxSize,
+                                       @Value("${avatars.storage.segment.compaction-ratio:0.5}") double compactionRatio,
+                                       @Value("${avatars.storage.cache.path:}") String cachePath,
+                                       @Value("${avatars.storage.cache.max-bytes:536870912}") long cacheMaxBytes,
+                                       AvatarChunkRepository avatarChunkRepository,
+                                       PlatformTransactionManager transactionManager) throws IOException {
+        AvatarStorage storage = switch (type) {
+            case "filesystem" -> new FileSystemAvatarStorage(Path.of(path));
+            case "database" -> new DatabaseAvatarStorage(avatarChunkRepository, transactionManager);
+            case "segment" -> new SegmentAvatarStorage(Path.of(segmentPath), segmentMaxSize, compactionRatio);
+            default -> throw new IllegalStateException("Unknown avatar storage type: " + type);
+        };
+        if (cachePath.isBlank()) {
+            logger.info("Avatar content is stored in {} storage", type);
+            return storage;
+        }
+        logger.info("Avatar content is stored in {} storage with a local disk cache in {}", type, cachePath);
+        return new CachingAvatarStorage(storage, Path.of(cachePath), cacheMaxBytes);
+    }
+}
@@ -0,0 +1,39 @@
+package ru.hogwarts.school.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.springframework.core.io.AbstractResource;
+
+class AvatarStorageResource extends AbstractResource {
+
+    private final AvatarStorage storage;
+    private final String key;
+    private final long size;
+
+    AvatarStorageResource(AvatarStorage storage, String key, long size) {
+        this.storage = storage;
+        this.key = key;
+        this.size = size;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return storage.openStream(key);
+    }
+
+    @Override
+    public long contentLength() {
+        return size;
+    }
+
+    @Override
+    public String getFilename() {
+        return key;
+    }
+
+    @Override
+    public String getDescription() {
+        return "avatar content [" + key + "]";
+    }
+}
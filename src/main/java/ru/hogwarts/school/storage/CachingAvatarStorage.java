@@ -0,0 +1,166 @@
+package ru.hogwarts.school.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class CachingAvatarStorage implements AvatarStorage {
+
+    private static final Logger logger = LoggerFactory.getLogger(CachingAvatarStorage.class);
+
+    private final AvatarStorage shared;
+    private final FileSystemAvatarStorage local;
+    private final long maxBytes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long usedBytes;
+
+    public CachingAvatarStorage(AvatarStorage shared, Path cacheDir, long maxBytes) throws IOException {
+        this.shared = shared;
+        this.local = new FileSystemAvatarStorage(cacheDir);
+        this.maxBytes = maxBytes;
+        Files.createDirectories(cacheDir);
+        loadEntries(cacheDir);
+    }
+
+    @Override
+    public boolean exists(String key) throws IOException {
+        return shared.exists(key);
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+        long size = local.size(key);
+        return size >= 0 ? size : shared.size(key);
+    }
+
+    @Override
+    public InputStream openStream(String key) throws IOException {
+        Optional<Path> localFile = localFile(key);
+        return localFile.isPresent() ? Files.newInputStream(localFile.get()) : shared.openStream(key);
+    }
+
+    @Override
+    public Optional<Path> localFile(String key) throws IOException {
+        Optional<Path> cached = local.localFile(key);
+        if (cached.isPresent()) {
+            touch(key);
+            return cached;
+        }
+        if (!shared.exists(key)) {
+            return Optional.empty();
+        }
+
+        Path tempFile = Files.createTempFile(local.getRoot(), "fetch-", ".tmp");
+        try (InputStream in = shared.openStream(key)) {
+            Files.copy(in, tempFile, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+        long size = Files.size(tempFile);
+        local.put(key, tempFile);
+        logger.debug("Cached avatar content {} ({} bytes) on local disk", key, size);
+        record(key, size);
+        return local.localFile(key);
+    }
+
+    @Override
+    public void put(String key, Path source) throws IOException {
+        shared.put(key, source);
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        shared.delete(key);
+        local.delete(key);
+        lock.lock();
+        try {
+            Long size = entries.remove(key);
+            if (size != null) {
+                usedBytes -= size;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void touch(String key) {
+        lock.lock();
+        try {
+            entries.get(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void record(String key, long size) throws IOException {
+        List<String> evicted = new ArrayList<>();
+        lock.lock();
+        try {
+            Long previous = entries.put(key, size);
+            if (previous != null) {
+                usedBytes -= previous;
+            }
+            usedBytes += size;
+            Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+            while (usedBytes > maxBytes && eldest.hasNext()) {
+                Map.Entry<String, Long> entry = eldest.next();
+                if (entry.getKey().equals(key)) {
+                    continue;
+                }
+                usedBytes -= entry.getValue();
+                evicted.add(entry.getKey());
+                eldest.remove();
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (String evictedKey : evicted) {
+            local.delete(evictedKey);
+            logger.debug("Evicted avatar content {} from local disk cache", evictedKey);
+        }
+    }
+
+    private void loadEntries(Path cacheDir) throws IOException {
+        try (Stream<Path> leftovers = Files.list(cacheDir)) {
+            for (Path leftover : leftovers.filter(path -> path.getFileName().toString().startsWith("fetch-")).toList()) {
+                Files.deleteIfExists(leftover);
+            }
+        }
+        try (Stream<Path> files = Files.walk(cacheDir, 2)) {
+            List<Path> cached = files
+                    .filter(Files::isRegularFile)
+                    .filter(path -> !path.getParent().equals(cacheDir))
+                    .sorted(Comparator.comparing(CachingAvatarStorage::lastAccess))
+                    .toList();
+            for (Path path : cached) {
+                record(path.getFileName().toString(), Files.size(path));
+            }
+        }
+        logger.info("Local avatar cache {} holds {} entries ({} bytes)", cacheDir, entries.size(), usedBytes);
+    }
+
+    private static long lastAccess(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class).lastAccessTime().toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package ru.hogwarts.school.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.model.AvatarChunk;
+import ru.hogwarts.school.model.AvatarChunkStats;
+import ru.hogwarts.school.repositories.AvatarChunkRepository;
+
+public class DatabaseAvatarStorage implements AvatarStorage {
+
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseAvatarStorage.class);
+
+    private final AvatarChunkRepository avatarChunkRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public DatabaseAvatarStorage(AvatarChunkRepository avatarChunkRepository,
+                                 PlatformTransactionManager transactionManager) {
+        this.avatarChunkRepository = avatarChunkRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // content is released from afterCommit callbacks, where joining the finished transaction would fail
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return avatarChunkRepository.existsByContentKeyAndSeq(key, 0);
+    }
+
+    @Override
+    public long size(String key) {
+        AvatarChunkStats stats = avatarChunkRepository.findStats(key);
+        return stats.size() == null ? -1 : stats.size();
+    }
+
+    @Override
+    public InputStream openStream(String key) throws IOException {
+        AvatarChunkStats stats = avatarChunkRepository.findStats(key);
+        if (stats.chunks() == 0) {
+            throw new NoSuchFileException(key);
+        }
+        return new ChunkInputStream(key, stats.chunks().intValue());
+    }
+
+    @Override
+    public Optional<Path> localFile(String key) {
+        return Optional.empty();
+    }
+
+    @Override
+    public void put(String key, Path source) throws IOException {
+        try {
+            if (exists(key)) {
+                return;
+            }
+            List<AvatarChunk> chunks = new ArrayList<>();
+            try (InputStream in = Files.newInputStream(source)) {
+                int seq = 0;
+                byte[] data;
+                do {
+                    data = in.readNBytes(AvatarChunk.MAX_SIZE);
+                    if (data.length > 0 || seq == 0) {
+                        chunks.add(new AvatarChunk(key, seq++, data));
+                    }
+                } while (data.length == AvatarChunk.MAX_SIZE);
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> avatarChunkRepository.saveAll(chunks));
+                logger.debug("Stored avatar content {} in {} chunks", key, chunks.size());
+            } catch (DataIntegrityViolationException e) {
+                logger.debug("Avatar content {} was stored concurrently by another instance", key);
+            }
+        } finally {
+            Files.deleteIfExists(source);
+        }
+    }
+
+    @Override
+    public void delete(String key) {
+        transactionTemplate.executeWithoutResult(status -> avatarChunkRepository.deleteByContentKey(key));
+    }
+
+    private class ChunkInputStream extends InputStream {
+
+        private final String key;
+        private final int chunks;
+        private int nextSeq;
+        private byte[] current = new byte[0];
+        private int position;
+
+        private ChunkInputStream(String key, int chunks) {
+            this.key = key;
+            this.chunks = chunks;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            return current[position++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int count = Math.min(length, current.length - position);
+            System.arraycopy(current, position, buffer, offset, count);
+            position += count;
+            return count;
+        }
+
+        private boolean fill() throws IOException {
+            while (position == current.length) {
+                if (nextSeq == chunks) {
+                    return false;
+                }
+                current = avatarChunkRepository.findData(key, nextSeq)
+                        .orElseThrow(() -> new IOException("Chunk " + nextSeq + " of avatar content " + key
+                                + " is missing"));
+                nextSeq++;
+                position = 0;
+            }
+            return true;
+        }
+    }
+}
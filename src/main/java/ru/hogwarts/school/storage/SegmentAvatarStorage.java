@@ -0,0 +1,537 @@
+package ru.hogwarts.school.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class SegmentAvatarStorage implements AvatarStorage, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentAvatarStorage.class);
+
+    private static final int MAGIC = 0x41565347;
+    private static final byte TYPE_PUT = 1;
+    private static final byte TYPE_TOMBSTONE = 2;
+    private static final int HEADER_SIZE = 15;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+    private static final long GROWTH_STEP = 4L * 1024 * 1024;
+
+    private final Path dir;
+    private final long maxSegmentSize;
+    private final double compactionRatio;
+    private final Map<String, Location> index = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Integer, Segment> segments = new ConcurrentSkipListMap<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ExecutorService compactor;
+    private Segment active;
+
+    public SegmentAvatarStorage(Path dir, long maxSegmentSize, double compactionRatio) throws IOException {
+        if (maxSegmentSize <= HEADER_SIZE || maxSegmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Segment size must be between " + HEADER_SIZE + " and "
+                    + Integer.MAX_VALUE + " bytes");
+        }
+        this.dir = dir;
+        this.maxSegmentSize = maxSegmentSize;
+        this.compactionRatio = compactionRatio;
+        this.compactor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "avatar-segment-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Files.createDirectories(dir);
+        recover();
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return index.containsKey(key);
+    }
+
+    @Override
+    public long size(String key) {
+        Location location = index.get(key);
+        return location == null ? -1 : location.length();
+    }
+
+    @Override
+    public InputStream openStream(String key) throws IOException {
+        return new ByteBufferBackedInputStream(mappedView(key).orElseThrow(() -> new NoSuchFileException(key)));
+    }
+
+    @Override
+    public Optional<Path> localFile(String key) {
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<ByteBuffer> mappedView(String key) throws IOException {
+        for (int attempt = 0; attempt < 2; attempt++) {
+            Location location = index.get(key);
+            if (location == null) {
+                return Optional.empty();
+            }
+            Segment segment = segments.get(location.segment());
+            if (segment != null) {
+                ByteBuffer view = segment.view(location.offset(), location.length());
+                if (view != null) {
+                    return Optional.of(view);
+                }
+            }
+        }
+        throw new IOException("Avatar content " + key + " was moved by compaction while being read");
+    }
+
+    @Override
+    public void put(String key, Path source) throws IOException {
+        try {
+            if (index.containsKey(key)) {
+                return;
+            }
+            byte[] data = Files.readAllBytes(source);
+            Location location = null;
+            writeLock.lock();
+            try {
+                if (!index.containsKey(key)) {
+                    location = append(TYPE_PUT, key, data);
+                    index.put(key, location);
+                }
+            } finally {
+                writeLock.unlock();
+            }
+            if (location != null) {
+                sync(location);
+            }
+        } finally {
+            Files.deleteIfExists(source);
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Segment compactable = null;
+        Location tombstone;
+        writeLock.lock();
+        try {
+            Location removed = index.remove(key);
+            if (removed == null) {
+                return;
+            }
+            tombstone = append(TYPE_TOMBSTONE, key, new byte[0]);
+            segments.get(tombstone.segment()).markDead(recordSize(key, 0));
+            Segment segment = segments.get(removed.segment());
+            if (segment != null) {
+                segment.markDead(recordSize(key, removed.length()));
+                if (segment != active && segment.deadRatio() >= compactionRatio) {
+                    compactable = segment;
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        sync(tombstone);
+        if (compactable != null) {
+            scheduleCompaction(compactable);
+        }
+    }
+
+    @Override
+    public void close() {
+        compactor.shutdownNow();
+        writeLock.lock();
+        try {
+            if (active != null) {
+                active.seal();
+            }
+        } catch (IOException e) {
+            logger.warn("Could not seal avatar segment {}: {}", active.path(), e.getMessage());
+        }
+        try {
+            for (Segment segment : segments.values()) {
+                segment.close();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private Location append(byte type, String key, byte[] data) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int recordSize = HEADER_SIZE + keyBytes.length + data.length;
+        if (active == null || (active.size() > 0 && active.size() + recordSize > maxSegmentSize)) {
+            roll();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(keyBytes);
+        crc.update(data);
+        ByteBuffer record = ByteBuffer.allocate(recordSize)
+                .putInt(MAGIC)
+                .put(type)
+                .putShort((short) keyBytes.length)
+                .putInt(data.length)
+                .putInt((int) crc.getValue())
+                .put(keyBytes)
+                .put(data)
+                .flip();
+        long position = active.append(record);
+        return new Location(active.id(), (int) position + HEADER_SIZE + keyBytes.length, data.length);
+    }
+
+    // appends only reach the page cache under the write lock; writers then share one fsync per batch
+    private void sync(Location location) throws IOException {
+        Segment segment = segments.get(location.segment());
+        if (segment != null) {
+            segment.sync(location.offset() + location.length());
+        }
+    }
+
+    private void roll() throws IOException {
+        if (active != null) {
+            active.seal();
+        }
+        int id = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+        Segment segment = Segment.open(segmentPath(id), id);
+        segments.put(id, segment);
+        active = segment;
+        logger.debug("Opened avatar segment {}", segment.path());
+    }
+
+    private void scheduleCompaction(Segment segment) {
+        if (!segment.compacting.compareAndSet(false, true)) {
+            return;
+        }
+        compactor.execute(() -> {
+            try {
+                compact(segment);
+            } catch (IOException | RuntimeException e) {
+                segment.compacting.set(false);
+                logger.warn("Could not compact avatar segment {}: {}", segment.path(), e.getMessage());
+            }
+        });
+    }
+
+    private void compact(Segment segment) throws IOException {
+        long startTime = System.currentTimeMillis();
+        int moved = 0;
+        ByteBuffer contents = segment.view(0, (int) segment.size());
+        if (contents == null) {
+            return;
+        }
+        while (contents.remaining() >= HEADER_SIZE) {
+            Record record = Record.read(contents);
+            if (record == null) {
+                break;
+            }
+            writeLock.lock();
+            try {
+                if (record.type() == TYPE_PUT) {
+                    Location location = index.get(record.key());
+                    if (location != null && location.segment() == segment.id()
+                            && location.offset() == record.dataOffset()) {
+                        index.put(record.key(), append(TYPE_PUT, record.key(), record.data()));
+                        moved++;
+                    }
+                } else if (!index.containsKey(record.key()) && segments.firstKey() < segment.id()) {
+                    Location tombstone = append(TYPE_TOMBSTONE, record.key(), new byte[0]);
+                    segments.get(tombstone.segment()).markDead(recordSize(record.key(), 0));
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        writeLock.lock();
+        try {
+            active.force();
+            segments.remove(segment.id());
+            segment.close();
+        } finally {
+            writeLock.unlock();
+        }
+        Files.deleteIfExists(segment.path());
+        logger.info("Compacted avatar segment {}: moved {} live avatars in {} ms",
+                segment.path().getFileName(), moved, System.currentTimeMillis() - startTime);
+    }
+
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(dir)) {
+            files = list.filter(path -> segmentId(path) > 0)
+                    .sorted((a, b) -> Integer.compare(segmentId(a), segmentId(b)))
+                    .toList();
+        }
+
+        for (int i = 0; i < files.size(); i++) {
+            Path path = files.get(i);
+            Segment segment = Segment.open(path, segmentId(path));
+            segments.put(segment.id(), segment);
+            ByteBuffer contents = segment.view(0, (int) segment.size());
+            int position = 0;
+            while (contents.remaining() >= HEADER_SIZE) {
+                Record record = Record.read(contents);
+                if (record == null) {
+                    break;
+                }
+                if (record.type() == TYPE_PUT) {
+                    Location previous = index.put(record.key(),
+                            new Location(segment.id(), record.dataOffset(), record.data().length));
+                    markDead(previous, record.key());
+                } else {
+                    markDead(index.remove(record.key()), record.key());
+                    segment.markDead(recordSize(record.key(), 0));
+                }
+                position = contents.position();
+            }
+            if (position < segment.size()) {
+                if (i == files.size() - 1) {
+                    logger.warn("Truncating torn tail of avatar segment {} at {} of {} bytes",
+                            path, position, segment.size());
+                    segment.truncate(position);
+                } else {
+                    logger.warn("Avatar segment {} has {} unreadable trailing bytes",
+                            path, segment.size() - position);
+                    segment.markDead(segment.size() - position);
+                }
+            }
+        }
+        active = segments.isEmpty() ? null : segments.lastEntry().getValue();
+        logger.info("Avatar segment store {} holds {} avatars in {} segments", dir, index.size(), segments.size());
+
+        for (Segment segment : segments.values()) {
+            if (segment != active && segment.deadRatio() >= compactionRatio) {
+                scheduleCompaction(segment);
+            }
+        }
+    }
+
+    private void markDead(Location location, String key) {
+        if (location != null) {
+            Segment segment = segments.get(location.segment());
+            if (segment != null) {
+                segment.markDead(recordSize(key, location.length()));
+            }
+        }
+    }
+
+    private Path segmentPath(int id) {
+        return dir.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+    }
+
+    private static int segmentId(Path path) {
+        String name = path.getFileName().toString();
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static int recordSize(String key, int dataLength) {
+        return HEADER_SIZE + key.getBytes(StandardCharsets.UTF_8).length + dataLength;
+    }
+
+    private record Location(int segment, int offset, int length) {
+    }
+
+    private record Record(byte type, String key, int dataOffset, byte[] data) {
+
+        static Record read(ByteBuffer buffer) {
+            int start = buffer.position();
+            if (buffer.getInt() != MAGIC) {
+                buffer.position(start);
+                return null;
+            }
+            byte type = buffer.get();
+            int keyLength = buffer.getShort() & 0xffff;
+            int dataLength = buffer.getInt();
+            int checksum = buffer.getInt();
+            if ((type != TYPE_PUT && type != TYPE_TOMBSTONE) || dataLength < 0
+                    || buffer.remaining() < keyLength + dataLength) {
+                buffer.position(start);
+                return null;
+            }
+            byte[] keyBytes = new byte[keyLength];
+            buffer.get(keyBytes);
+            int dataOffset = buffer.position();
+            byte[] data = new byte[dataLength];
+            buffer.get(data);
+
+            CRC32 crc = new CRC32();
+            crc.update(keyBytes);
+            crc.update(data);
+            if ((int) crc.getValue() != checksum) {
+                buffer.position(start);
+                return null;
+            }
+            return new Record(type, new String(keyBytes, StandardCharsets.UTF_8), dataOffset, data);
+        }
+    }
+
+    private static final class Segment {
+
+        private final Path path;
+        private final int id;
+        private final FileChannel channel;
+        private final AtomicLong size;
+        private final AtomicLong durable;
+        private final AtomicLong deadBytes = new AtomicLong();
+        private final AtomicBoolean compacting = new AtomicBoolean();
+        private final ReentrantLock syncLock = new ReentrantLock();
+        private volatile MappedByteBuffer mapped;
+        private long allocated;
+
+        private Segment(Path path, int id, FileChannel channel) throws IOException {
+            this.path = path;
+            this.id = id;
+            this.channel = channel;
+            this.size = new AtomicLong(channel.size());
+            this.durable = new AtomicLong(channel.size());
+            this.allocated = channel.size();
+        }
+
+        static Segment open(Path path, int id) throws IOException {
+            return new Segment(path, id, FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE));
+        }
+
+        Path path() {
+            return path;
+        }
+
+        int id() {
+            return id;
+        }
+
+        long size() {
+            return size.get();
+        }
+
+        void markDead(long bytes) {
+            deadBytes.addAndGet(bytes);
+        }
+
+        double deadRatio() {
+            long total = size.get();
+            return total == 0 ? 0 : (double) deadBytes.get() / total;
+        }
+
+        // the file grows in GROWTH_STEP chunks so that reads of fresh records rarely need a new mapping
+        long append(ByteBuffer record) throws IOException {
+            long position = size.get();
+            long end = position + record.remaining();
+            if (end > allocated) {
+                allocated = Math.max(end, (position / GROWTH_STEP + 1) * GROWTH_STEP);
+                channel.write(ByteBuffer.allocate(1), allocated - 1);
+            }
+            long writePosition = position;
+            while (record.hasRemaining()) {
+                writePosition += channel.write(record, writePosition);
+            }
+            size.set(writePosition);
+            return position;
+        }
+
+        void sync(long position) throws IOException {
+            if (durable.get() >= position) {
+                return;
+            }
+            syncLock.lock();
+            try {
+                if (durable.get() >= position) {
+                    return;
+                }
+                long target = size.get();
+                channel.force(false);
+                durable.accumulateAndGet(target, Math::max);
+            } catch (ClosedChannelException e) {
+                logger.debug("Avatar segment {} was compacted before it was synced", path);
+            } finally {
+                syncLock.unlock();
+            }
+        }
+
+        void force() throws IOException {
+            sync(size.get());
+        }
+
+        // drops the preallocated tail once no more records will be appended
+        void seal() throws IOException {
+            if (allocated > size.get()) {
+                channel.truncate(size.get());
+                allocated = size.get();
+            }
+            force();
+        }
+
+        void truncate(long length) throws IOException {
+            channel.truncate(length);
+            size.set(length);
+            durable.set(length);
+            allocated = length;
+            mapped = null;
+        }
+
+        ByteBuffer view(int offset, int length) {
+            MappedByteBuffer current = mapped;
+            if (current == null || offset + length > current.capacity()) {
+                current = remap(offset + length);
+                if (current == null) {
+                    return null;
+                }
+            }
+            return current.slice(offset, length).asReadOnlyBuffer();
+        }
+
+        private synchronized MappedByteBuffer remap(long required) {
+            MappedByteBuffer current = mapped;
+            if (current != null && required <= current.capacity()) {
+                return current;
+            }
+            try {
+                current = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } catch (IOException e) {
+                return null;
+            }
+            if (required > current.capacity()) {
+                return null;
+            }
+            mapped = current;
+            return current;
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.warn("Could not close avatar segment {}: {}", path, e.getMessage());
+            }
+        }
+    }
+}
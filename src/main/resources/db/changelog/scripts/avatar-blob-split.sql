@@ -0,0 +1,28 @@
+-- liquibase formatted sql
+-- changeset rzubairov:5 dbms:postgresql
+-- preconditions onFail:MARK_RAN
+-- precondition-sql-check expectedResult:1 SELECT COUNT(*) FROM information_schema.columns WHERE LOWER(table_name) = 'avatar' AND LOWER(column_name) = 'data'
+
+CREATE TABLE avatar_blob (
+    avatar_id BIGINT PRIMARY KEY,
+    data OID
+);
+
+INSERT INTO avatar_blob (avatar_id, data)
+SELECT id, data FROM avatar WHERE data IS NOT NULL;
+
+ALTER TABLE avatar DROP COLUMN data;
+
+-- changeset rzubairov:6 dbms:h2
+-- preconditions onFail:MARK_RAN
+-- precondition-sql-check expectedResult:1 SELECT COUNT(*) FROM information_schema.columns WHERE LOWER(table_name) = 'avatar' AND LOWER(column_name) = 'data'
+
+CREATE TABLE avatar_blob (
+    avatar_id BIGINT PRIMARY KEY,
+    data BLOB
+);
+
+INSERT INTO avatar_blob (avatar_id, data)
+SELECT id, data FROM avatar WHERE data IS NOT NULL;
+
+ALTER TABLE avatar DROP COLUMN data;
@@ -0,0 +1,21 @@
+-- liquibase formatted sql
+-- changeset rzubairov:13
+
+CREATE SEQUENCE change_event_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE change_events (
+    id BIGINT PRIMARY KEY,
+    entity VARCHAR(16) NOT NULL,
+    entity_id BIGINT NOT NULL,
+    type VARCHAR(16) NOT NULL,
+    payload VARCHAR(2000),
+    created_at TIMESTAMP NOT NULL
+);
+
+-- changeset rzubairov:14
+
+CREATE INDEX change_events_created_at_index ON change_events (created_at);
+
+-- changeset rzubairov:19
+
+ALTER SEQUENCE change_event_seq INCREMENT BY 1;
@@ -9,4 +9,8 @@ CREATE TABLE faculty (
 
 -- changeset rzubairov:4
 
-CREATE INDEX faculty_name_color_index ON faculty (name, color);
\ No newline at end of file
+CREATE INDEX faculty_name_color_index ON faculty (name, color);
+
+-- changeset rzubairov:10
+
+CREATE SEQUENCE faculty_seq START WITH 1 INCREMENT BY 50;
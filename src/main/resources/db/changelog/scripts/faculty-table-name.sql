@@ -0,0 +1,14 @@
+-- liquibase formatted sql
+-- changeset rzubairov:16
+-- preconditions onFail:MARK_RAN
+-- precondition-sql-check expectedResult:0 SELECT COUNT(*) FROM information_schema.tables WHERE LOWER(table_name) = 'faculties'
+
+ALTER TABLE faculty RENAME TO faculties;
+
+-- changeset rzubairov:11 dbms:postgresql
+
+SELECT setval('faculty_seq', COALESCE(MAX(id), 0) + 50, false) FROM faculties;
+
+-- changeset rzubairov:17 dbms:h2
+
+ALTER SEQUENCE faculty_seq RESTART WITH (SELECT COALESCE(MAX(id), 0) + 50 FROM faculties);
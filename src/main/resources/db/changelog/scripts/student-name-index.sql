@@ -11,4 +11,28 @@ FOREIGN KEY (faculty_id) REFERENCES faculty(id)
 
 -- changeset rzubairov:2
 
-CREATE INDEX student_name_index ON student (name);
\ No newline at end of file
+CREATE INDEX student_name_index ON student (name);
+
+-- changeset rzubairov:7 dbms:postgresql
+
+CREATE INDEX student_upper_name_index ON student (upper(name) varchar_pattern_ops);
+
+-- changeset rzubairov:8
+
+CREATE SEQUENCE student_seq START WITH 1 INCREMENT BY 50;
+
+-- changeset rzubairov:9 dbms:postgresql
+
+SELECT setval('student_seq', COALESCE(MAX(id), 0) + 50, false) FROM student;
+
+-- changeset rzubairov:18 dbms:h2
+
+ALTER SEQUENCE student_seq RESTART WITH (SELECT COALESCE(MAX(id), 0) + 50 FROM student);
+
+-- changeset rzubairov:12
+
+CREATE INDEX student_faculty_id_index ON student (faculty_id, id);
+
+-- changeset rzubairov:15 dbms:postgresql
+
+CREATE INDEX student_upper_name_order_index ON student (upper(name), name);
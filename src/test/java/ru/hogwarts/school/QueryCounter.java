@@ -0,0 +1,24 @@
+package ru.hogwarts.school;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+public class QueryCounter implements StatementInspector {
+
+    private static final AtomicLong count = new AtomicLong();
+
+    @Override
+    public String inspect(String sql) {
+        count.incrementAndGet();
+        return sql;
+    }
+
+    public static void reset() {
+        count.set(0);
+    }
+
+    public static long count() {
+        return count.get();
+    }
+}
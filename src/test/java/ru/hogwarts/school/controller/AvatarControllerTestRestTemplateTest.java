@@ -0,0 +1,316 @@
+package ru.hogwarts.school.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import ru.hogwarts.school.model.AvatarSlice;
+import ru.hogwarts.school.model.AvatarSummary;
+import ru.hogwarts.school.model.AvatarChunkStats;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repositories.AvatarChunkRepository;
+import ru.hogwarts.school.service.AvatarCacheStats;
+import ru.hogwarts.school.service.AvatarImportReport;
+import ru.hogwarts.school.service.AvatarImportResult;
+import ru.hogwarts.school.service.AvatarReconcileStatus;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "avatars.storage.type=database",
+        "avatars.dir.path=./target/test-avatars/database",
+        "avatars.cache.max-bytes=8192"
+})
+@DirtiesContext
+class AvatarControllerTestRestTemplateTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+    @Autowired
+    private AvatarChunkRepository avatarChunkRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private String url(String path) {
+        return "http://localhost:" + port + path;
+    }
+
+    private Student createStudent(String name) {
+        return restTemplate.postForObject(url("/student"), new Student(name, 16), Student.class);
+    }
+
+    private ResponseEntity<String> uploadAvatar(Long studentId, byte[] content) {
+        HttpHeaders partHeaders = new HttpHeaders();
+        partHeaders.setContentType(MediaType.IMAGE_PNG);
+        ByteArrayResource file = new ByteArrayResource(content) {
+            @Override
+            public String getFilename() {
+                return "avatar.png";
+            }
+        };
+
+        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        body.add("avatar", new HttpEntity<>(file, partHeaders));
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+
+        return restTemplate.postForEntity(url("/student/" + studentId + "/avatar"),
+                new HttpEntity<>(body, headers), String.class);
+    }
+
+    private byte[] downloadAvatar(Long studentId) {
+        ResponseEntity<byte[]> response = restTemplate.getForEntity(
+                url("/student/" + studentId + "/avatar"), byte[].class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        return response.getBody();
+    }
+
+    private AvatarCacheStats cacheStats() {
+        return restTemplate.getForObject(url("/avatar/cache-stats"), AvatarCacheStats.class);
+    }
+
+    private static String sha256(byte[] content) throws NoSuchAlgorithmException {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+    }
+
+    private static byte[] zipArchive(Map<String, byte[]> entries) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                zip.putNextEntry(new ZipEntry(entry.getKey()));
+                zip.write(entry.getValue());
+                zip.closeEntry();
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] pngImage(int width, int height, int rgb) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                image.setRGB(x, y, rgb ^ (x * 31 + y));
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    @Test
+    void downloadAvatar_FromDatabaseStorage_ShouldCacheOnlyAvatarsWithinBudget() throws IOException {
+        Student small = createStudent("Кэш Маленький");
+        Student large = createStudent("Кэш Большой");
+        byte[] smallContent = pngImage(20, 20, 0x102030);
+        byte[] largeContent = new byte[20_000];
+        new Random(6).nextBytes(largeContent);
+        uploadAvatar(small.getId(), smallContent);
+        uploadAvatar(large.getId(), largeContent);
+        AvatarCacheStats before = cacheStats();
+
+        assertThat(downloadAvatar(small.getId())).isEqualTo(smallContent);
+        assertThat(downloadAvatar(small.getId())).isEqualTo(smallContent);
+        assertThat(downloadAvatar(large.getId())).isEqualTo(largeContent);
+        assertThat(downloadAvatar(large.getId())).isEqualTo(largeContent);
+        assertThat(downloadAvatar(small.getId())).isEqualTo(smallContent);
+
+        AvatarCacheStats after = cacheStats();
+        assertThat(after.hits() - before.hits()).isEqualTo(2);
+        assertThat(after.misses() - before.misses()).isEqualTo(3);
+        assertThat(after.evictions()).isEqualTo(before.evictions());
+        assertThat(after.usedBytes()).isLessThanOrEqualTo(after.maxBytes());
+    }
+
+    @Test
+    void downloadAvatar_FromLegacyBlob_ShouldMoveItIntoContentStorage() throws Exception {
+        Student student = createStudent("Аватар Из Блоба");
+        byte[] content = pngImage(24, 24, 0x405060);
+        jdbcTemplate.update("INSERT INTO avatar (file_size, media_type, student_id) VALUES (?, ?, ?)",
+                content.length, MediaType.IMAGE_PNG_VALUE, student.getId());
+        Long avatarId = jdbcTemplate.queryForObject("SELECT id FROM avatar WHERE student_id = ?", Long.class,
+                student.getId());
+        jdbcTemplate.update("INSERT INTO avatar_blob (avatar_id, data) VALUES (?, ?)", avatarId, content);
+
+        assertThat(downloadAvatar(student.getId())).isEqualTo(content);
+
+        String contentHash = sha256(content);
+        assertThat(jdbcTemplate.queryForObject("SELECT content_hash FROM avatar WHERE id = ?", String.class,
+                avatarId)).isEqualTo(contentHash);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM avatar_blob WHERE avatar_id = ?",
+                Integer.class, avatarId)).isZero();
+        assertThat(avatarChunkRepository.findStats(contentHash).size()).isEqualTo(content.length);
+        assertThat(downloadAvatar(student.getId())).isEqualTo(content);
+    }
+
+    @Test
+    void getAvatarSlice_ShouldWalkAllAvatarsByCursorWithoutCounting() throws IOException {
+        List<Long> studentIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Student student = createStudent("Список Аватаров " + i);
+            uploadAvatar(student.getId(), pngImage(10 + i, 10, 0x304050));
+            studentIds.add(student.getId());
+        }
+
+        List<AvatarSummary> listed = new ArrayList<>();
+        AvatarSlice slice = restTemplate.getForObject(url("/avatars?size=2"), AvatarSlice.class);
+        listed.addAll(slice.content());
+        while (slice.hasNext()) {
+            assertThat(slice.content()).hasSize(2);
+            assertThat(slice.nextCursor()).isEqualTo(slice.content().get(1).id());
+            slice = restTemplate.getForObject(url("/avatars?size=2&cursor=" + slice.nextCursor()), AvatarSlice.class);
+            listed.addAll(slice.content());
+        }
+
+        assertThat(slice.nextCursor()).isNull();
+        assertThat(listed).extracting(AvatarSummary::id).isSorted().doesNotHaveDuplicates();
+        assertThat(listed).extracting(AvatarSummary::studentId).containsAll(studentIds);
+        assertThat(listed).filteredOn(summary -> studentIds.contains(summary.studentId()))
+                .allSatisfy(summary -> assertThat(summary.mediaType()).isEqualTo(MediaType.IMAGE_PNG_VALUE));
+        assertThat(restTemplate.getForObject(url("/avatars?size=2"), String.class))
+                .contains("\"url\"")
+                .doesNotContain("totalElements");
+    }
+
+    @Test
+    void importAvatars_ShouldStoreValidEntriesAndReportFailuresPerEntry() throws IOException {
+        Student first = createStudent("Импорт Первый");
+        Student second = createStudent("Импорт Второй");
+        byte[] firstContent = pngImage(12, 12, 0x405060);
+        byte[] secondContent = pngImage(14, 14, 0x506070);
+        byte[] replacedContent = pngImage(16, 16, 0x607080);
+
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put(first.getId() + ".png", replacedContent);
+        entries.put("photos/" + second.getId() + ".png", secondContent);
+        entries.put("not-a-student.png", firstContent);
+        entries.put("999999.png", firstContent);
+        entries.put(second.getId() + ".jpg", new byte[307201]);
+        entries.put(first.getId() + ".jpg", firstContent);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("application/zip"));
+        ResponseEntity<AvatarImportReport> response = restTemplate.postForEntity(url("/avatars/import"),
+                new HttpEntity<>(zipArchive(entries), headers), AvatarImportReport.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        AvatarImportReport report = response.getBody();
+        assertThat(report.imported()).isEqualTo(2);
+        assertThat(report.failed()).isEqualTo(4);
+        assertThat(report.results()).extracting(AvatarImportResult::status).containsExactly(
+                AvatarImportResult.Status.FAILED,
+                AvatarImportResult.Status.IMPORTED,
+                AvatarImportResult.Status.FAILED,
+                AvatarImportResult.Status.FAILED,
+                AvatarImportResult.Status.FAILED,
+                AvatarImportResult.Status.IMPORTED);
+        assertThat(report.results()).extracting(AvatarImportResult::message).containsExactly(
+                "Superseded by entry " + first.getId() + ".jpg",
+                null,
+                "Entry name must be <studentId>.<extension>",
+                "Student not found",
+                "File is too big",
+                null);
+
+        assertThat(downloadAvatar(first.getId())).isEqualTo(firstContent);
+        assertThat(downloadAvatar(second.getId())).isEqualTo(secondContent);
+    }
+
+    @Test
+    void uploadAvatar_ToDatabaseStorage_ShouldStreamChunksBackAndDeleteThemWhenReplaced() throws Exception {
+        Student student = createStudent("Хранилище Чанков");
+        byte[] content = new byte[150_000];
+        new Random(9).nextBytes(content);
+        uploadAvatar(student.getId(), content);
+
+        AvatarChunkStats stats = avatarChunkRepository.findStats(sha256(content));
+        assertThat(stats.chunks()).isEqualTo(3);
+        assertThat(stats.size()).isEqualTo(content.length);
+        assertThat(downloadAvatar(student.getId())).isEqualTo(content);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RANGE, "bytes=65530-65545");
+        ResponseEntity<byte[]> range = restTemplate.exchange(url("/student/" + student.getId() + "/avatar"),
+                HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+        assertThat(range.getStatusCode()).isEqualTo(HttpStatus.PARTIAL_CONTENT);
+        assertThat(range.getBody()).isEqualTo(Arrays.copyOfRange(content, 65530, 65546));
+
+        assertThat(uploadAvatar(student.getId(), pngImage(10, 10, 0x708090)).getStatusCode())
+                .isEqualTo(HttpStatus.OK);
+
+        assertThat(avatarChunkRepository.findStats(sha256(content)).chunks()).isZero();
+    }
+
+    @Test
+    void startReconcile_ByDefault_ShouldOnlyReportOrphanTemporaryFiles() throws Exception {
+        Path avatarsDir = Path.of("./target/test-avatars/database");
+        Files.createDirectories(avatarsDir);
+        Path staleUpload = Files.write(avatarsDir.resolve("upload-reconcile.tmp"), new byte[100]);
+        Path legacyFile = Files.write(avatarsDir.resolve("7.png"), new byte[200]);
+        FileTime old = FileTime.from(Instant.now().minus(2, ChronoUnit.HOURS));
+        Files.setLastModifiedTime(staleUpload, old);
+        Files.setLastModifiedTime(legacyFile, old);
+
+        try {
+            AvatarReconcileStatus idle = restTemplate.getForObject(url("/avatars/reconcile"),
+                    AvatarReconcileStatus.class);
+            assertThat(idle.mode()).isEqualTo("dry-run");
+
+            ResponseEntity<AvatarReconcileStatus> started = restTemplate.postForEntity(url("/avatars/reconcile"),
+                    null, AvatarReconcileStatus.class);
+            assertThat(started.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+
+            AvatarReconcileStatus status = started.getBody();
+            long deadline = System.currentTimeMillis() + 10_000;
+            while ((status.running() || status.finishedAt() == null) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+                status = restTemplate.getForObject(url("/avatars/reconcile"), AvatarReconcileStatus.class);
+            }
+
+            assertThat(status.finishedAt()).isNotNull();
+            assertThat(status.lastError()).isNull();
+            assertThat(status.orphanFiles()).isEqualTo(1);
+            assertThat(status.reclaimedBytes()).isEqualTo(100);
+            assertThat(staleUpload).exists();
+            assertThat(legacyFile).exists();
+        } finally {
+            Files.deleteIfExists(staleUpload);
+            Files.deleteIfExists(legacyFile);
+        }
+    }
+}
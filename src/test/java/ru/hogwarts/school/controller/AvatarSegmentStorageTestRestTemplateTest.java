@@ -0,0 +1,136 @@
+package ru.hogwarts.school.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.storage.AvatarStorage;
+import ru.hogwarts.school.storage.SegmentAvatarStorage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "avatars.storage.type=segment",
+        "avatars.storage.segment.max-size=65536",
+        "avatars.cache.max-bytes=0"
+})
+@DirtiesContext
+class AvatarSegmentStorageTestRestTemplateTest {
+
+    private static final long SEGMENT_MAX_SIZE = 65536;
+    private static Path segmentDir;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+    @Autowired
+    private AvatarStorage avatarStorage;
+
+    @DynamicPropertySource
+    static void segmentPath(DynamicPropertyRegistry registry) throws IOException {
+        Files.createDirectories(Path.of("./target"));
+        segmentDir = Files.createTempDirectory(Path.of("./target"), "test-segments-");
+        registry.add("avatars.storage.segment.path", segmentDir::toString);
+    }
+
+    private String url(String path) {
+        return "http://localhost:" + port + path;
+    }
+
+    private ResponseEntity<String> uploadAvatar(Long studentId, byte[] content) {
+        HttpHeaders partHeaders = new HttpHeaders();
+        partHeaders.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        ByteArrayResource file = new ByteArrayResource(content) {
+            @Override
+            public String getFilename() {
+                return "avatar.bin";
+            }
+        };
+
+        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        body.add("avatar", new HttpEntity<>(file, partHeaders));
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+
+        return restTemplate.postForEntity(url("/student/" + studentId + "/avatar"),
+                new HttpEntity<>(body, headers), String.class);
+    }
+
+    private static String sha256(byte[] content) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] result = new byte[buffer.remaining()];
+        buffer.get(result);
+        return result;
+    }
+
+    @Test
+    void uploadAvatar_ToSegmentStorage_ShouldServeEveryAvatarAndRecoverSealedSegmentsAfterRestart() throws Exception {
+        List<Student> students = new ArrayList<>();
+        List<byte[]> contents = new ArrayList<>();
+        Random random = new Random(10);
+        for (int i = 0; i < 4; i++) {
+            Student student = restTemplate.postForObject(url("/student"), new Student("Сегмент " + i, 15), Student.class);
+            byte[] content = new byte[25_000];
+            random.nextBytes(content);
+            assertThat(uploadAvatar(student.getId(), content).getStatusCode()).isEqualTo(HttpStatus.OK);
+            students.add(student);
+            contents.add(content);
+        }
+
+        for (int i = 0; i < students.size(); i++) {
+            ResponseEntity<byte[]> response = restTemplate.getForEntity(
+                    url("/student/" + students.get(i).getId() + "/avatar"), byte[].class);
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThat(response.getBody()).isEqualTo(contents.get(i));
+        }
+
+        ((SegmentAvatarStorage) avatarStorage).close();
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(segmentDir)) {
+            segments = files.sorted().toList();
+        }
+        assertThat(segments).hasSizeGreaterThan(1);
+        for (Path segment : segments) {
+            assertThat(Files.size(segment)).isLessThanOrEqualTo(SEGMENT_MAX_SIZE);
+        }
+
+        try (SegmentAvatarStorage reopened = new SegmentAvatarStorage(segmentDir, SEGMENT_MAX_SIZE, 0.5)) {
+            for (byte[] content : contents) {
+                assertThat(reopened.mappedView(sha256(content)))
+                        .hasValueSatisfying(view -> assertThat(bytes(view)).isEqualTo(content));
+            }
+        }
+        for (Path segment : segments) {
+            assertThat(Files.size(segment)).isLessThanOrEqualTo(SEGMENT_MAX_SIZE);
+        }
+    }
+}
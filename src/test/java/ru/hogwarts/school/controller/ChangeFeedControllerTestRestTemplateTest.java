@@ -0,0 +1,218 @@
+package ru.hogwarts.school.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.junit.jupiter.api.Timeout;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.hogwarts.school.SchoolApplication;
+import ru.hogwarts.school.model.Student;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "changes.page-size=2",
+        "changes.heartbeat-interval=PT0.2S"
+})
+@DirtiesContext
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class ChangeFeedControllerTestRestTemplateTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    @Test
+    @Order(1)
+    @Timeout(10)
+    void shouldStreamStudentChangesAndResumeFromLastEventId() throws Exception {
+        String studentUrl = "http://localhost:" + port + "/student";
+        Student student = restTemplate.postForObject(studentUrl, new Student("Feed Student", 14), Student.class);
+        student.setName("Feed Student Renamed");
+        restTemplate.put(studentUrl, student);
+
+        List<JsonNode> events = readStudentEvents("0", student.getId(), 2);
+
+        assertThat(events).extracting(event -> event.get("type").asText()).containsExactly("CREATED", "UPDATED");
+        assertThat(events.get(1).get("data").get("name").asText()).isEqualTo("Feed Student Renamed");
+        long created = events.get(0).get("sequence").asLong();
+        assertThat(events.get(1).get("sequence").asLong()).isGreaterThan(created);
+
+        List<JsonNode> resumed = readStudentEvents(Long.toString(created), student.getId(), 1);
+
+        assertThat(resumed.get(0).get("type").asText()).isEqualTo("UPDATED");
+        assertThat(resumed.get(0).get("sequence").asLong()).isEqualTo(events.get(1).get("sequence").asLong());
+    }
+
+    @Test
+    @Order(2)
+    @Timeout(10)
+    void shouldDeliverBacklogAcrossPagesAndSendHeartbeatsWhenIdle() throws Exception {
+        String studentUrl = "http://localhost:" + port + "/student";
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ids.add(restTemplate.postForObject(studentUrl, new Student("Paged Student " + i, 15), Student.class).getId());
+        }
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/changes"))
+                .header("Accept", "text/event-stream")
+                .header("Last-Event-ID", "0")
+                .build();
+        HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+
+        List<Long> created = new ArrayList<>();
+        int heartbeats = 0;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+            String line;
+            while (heartbeats < 2 && (line = reader.readLine()) != null) {
+                if (line.startsWith(":")) {
+                    heartbeats++;
+                } else if (line.startsWith("data:")) {
+                    JsonNode event = objectMapper.readTree(line.substring("data:".length()));
+                    if (event.get("data").get("name").asText().startsWith("Paged Student")) {
+                        created.add(event.get("entityId").asLong());
+                    }
+                }
+            }
+        }
+
+        assertThat(created).containsExactlyElementsOf(ids);
+        assertThat(heartbeats).isEqualTo(2);
+    }
+
+    @Test
+    @Order(3)
+    @Timeout(10)
+    void shouldRollBackChangesWhoseEventsCannotBeRecorded() throws Exception {
+        String studentUrl = "http://localhost:" + port + "/student";
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/changes"))
+                .header("Accept", "text/event-stream")
+                .build();
+        HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+            ResponseEntity<String> rejected;
+            Long recordedUpTo = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM change_events", Long.class);
+            jdbcTemplate.execute("ALTER TABLE change_events ADD CONSTRAINT change_events_rejected CHECK (id <= "
+                    + recordedUpTo + ")");
+            try {
+                rejected = restTemplate.postForEntity(studentUrl, new Student("Rejected Student", 16), String.class);
+            } finally {
+                jdbcTemplate.execute("ALTER TABLE change_events DROP CONSTRAINT change_events_rejected");
+            }
+            Student recorded = restTemplate.postForObject(studentUrl, new Student("Recorded Student", 16), Student.class);
+
+            assertThat(rejected.getStatusCode().is5xxServerError()).isTrue();
+            assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM student WHERE name = ?", Integer.class,
+                    "Rejected Student")).isZero();
+            assertThat(nextEvent(reader)).satisfies(event -> {
+                assertThat(event.name()).isEqualTo("student");
+                assertThat(event.data().get("entityId").asLong()).isEqualTo(recorded.getId());
+            });
+        }
+    }
+
+    private record FeedEvent(String name, JsonNode data) {
+    }
+
+    private FeedEvent nextEvent(BufferedReader reader) throws Exception {
+        String name = null;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith("event:")) {
+                name = line.substring("event:".length());
+            } else if (line.startsWith("data:")) {
+                return new FeedEvent(name, objectMapper.readTree(line.substring("data:".length())));
+            }
+        }
+        throw new IllegalStateException("Change feed ended");
+    }
+
+    @Test
+    @Order(4)
+    @Timeout(60)
+    void shouldEndOpenStreamsWithoutStallingShutdown() throws Exception {
+        ConfigurableApplicationContext application = new SpringApplicationBuilder(SchoolApplication.class)
+                .properties("server.port=0")
+                .run();
+        int applicationPort = ((WebServerApplicationContext) application).getWebServer().getPort();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + applicationPort + "/changes"))
+                .header("Accept", "text/event-stream")
+                .build();
+        CompletableFuture<HttpResponse<InputStream>> subscription =
+                httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+        Thread.sleep(500);
+        restTemplate.postForObject("http://localhost:" + applicationPort + "/student",
+                new Student("Shutdown Student", 14), Student.class);
+        HttpResponse<InputStream> response = subscription.get();
+        assertThat(response.statusCode()).isEqualTo(200);
+
+        long started = System.nanoTime();
+        application.close();
+
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofSeconds(10));
+        try (InputStream body = response.body()) {
+            assertThat(new String(body.readAllBytes(), StandardCharsets.UTF_8)).contains("Shutdown Student");
+        }
+    }
+
+    private List<JsonNode> readStudentEvents(String lastEventId, Long studentId, int count) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/changes"))
+                .header("Accept", "text/event-stream")
+                .header("Last-Event-ID", lastEventId)
+                .build();
+        HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        assertThat(response.statusCode()).isEqualTo(200);
+
+        List<JsonNode> events = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+            String line;
+            while (events.size() < count && (line = reader.readLine()) != null) {
+                if (!line.startsWith("data:")) {
+                    continue;
+                }
+                JsonNode event = objectMapper.readTree(line.substring("data:".length()));
+                if ("student".equals(event.get("entity").asText()) && event.get("entityId").asLong() == studentId) {
+                    events.add(event);
+                }
+            }
+        }
+        return events;
+    }
+}
@@ -7,7 +7,13 @@ import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.test.web.server.LocalServerPort;
 import org.springframework.http.*;
 import org.springframework.test.context.ActiveProfiles;
+import ru.hogwarts.school.QueryCounter;
 import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.FacultyStats;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.model.StudentSlice;
+
+import java.util.Arrays;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -60,6 +66,7 @@ class FacultyControllerTestRestTemplateTest {
         Faculty createdFaculty = restTemplate.postForObject(baseUrl, faculty, Faculty.class);
         Long facultyId = createdFaculty.getId();
 
+        QueryCounter.reset();
         ResponseEntity<Faculty> response = restTemplate.getForEntity(
                 baseUrl + "/" + facultyId,
                 Faculty.class
@@ -69,6 +76,7 @@ class FacultyControllerTestRestTemplateTest {
         assertThat(response.getBody()).isNotNull();
         assertThat(response.getBody().getId()).isEqualTo(facultyId);
         assertThat(response.getBody().getName()).isEqualTo("Slytherin");
+        assertThat(QueryCounter.count()).isZero();
     }
 
     @Test
@@ -89,6 +97,7 @@ class FacultyControllerTestRestTemplateTest {
         headers.setContentType(MediaType.APPLICATION_JSON);
         HttpEntity<Faculty> request = new HttpEntity<>(updatedFaculty, headers);
 
+        QueryCounter.reset();
         ResponseEntity<Faculty> response = restTemplate.exchange(
                 baseUrl,
                 HttpMethod.PUT,
@@ -100,6 +109,7 @@ class FacultyControllerTestRestTemplateTest {
         assertThat(response.getBody()).isNotNull();
         assertThat(response.getBody().getName()).isEqualTo("Updated Hufflepuff");
         assertThat(response.getBody().getColor()).isEqualTo("Gold");
+        assertThat(QueryCounter.count()).isLessThanOrEqualTo(3);
     }
 
     @Test
@@ -140,6 +150,7 @@ class FacultyControllerTestRestTemplateTest {
         faculty2.setColor("Blue");
         restTemplate.postForObject(baseUrl, faculty2, Faculty.class);
 
+        QueryCounter.reset();
         ResponseEntity<Faculty[]> response = restTemplate.getForEntity(
                 baseUrl + "/color/Blue",
                 Faculty[].class
@@ -148,6 +159,7 @@ class FacultyControllerTestRestTemplateTest {
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
         assertThat(response.getBody()).isNotNull();
         assertThat(response.getBody().length).isGreaterThanOrEqualTo(2);
+        assertThat(QueryCounter.count()).isZero();
     }
 
     @Test
@@ -190,11 +202,13 @@ class FacultyControllerTestRestTemplateTest {
         faculty2.setColor("Color 2");
         restTemplate.postForObject(baseUrl, faculty2, Faculty.class);
 
+        QueryCounter.reset();
         ResponseEntity<Faculty[]> response = restTemplate.getForEntity(baseUrl, Faculty[].class);
 
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
         assertThat(response.getBody()).isNotNull();
         assertThat(response.getBody().length).isGreaterThanOrEqualTo(2);
+        assertThat(QueryCounter.count()).isZero();
     }
 
     @Test
@@ -205,12 +219,127 @@ class FacultyControllerTestRestTemplateTest {
         faculty.setColor("Test Color");
         Faculty createdFaculty = restTemplate.postForObject(baseUrl, faculty, Faculty.class);
 
-        ResponseEntity<Object[]> response = restTemplate.getForEntity(
+        QueryCounter.reset();
+        ResponseEntity<StudentSlice> response = restTemplate.getForEntity(
                 baseUrl + "/" + createdFaculty.getId() + "/students",
-                Object[].class
+                StudentSlice.class
         );
 
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
         assertThat(response.getBody()).isNotNull();
+        assertThat(response.getBody().content()).isEmpty();
+        assertThat(response.getBody().hasNext()).isFalse();
+        assertThat(QueryCounter.count()).isLessThanOrEqualTo(1);
+    }
+
+    @Test
+    @Order(9)
+    void shouldRankNameMatchesBeforeColorMatches() {
+        restTemplate.postForObject(baseUrl, new Faculty(null, "Zeta Crimson", "Teal"), Faculty.class);
+        restTemplate.postForObject(baseUrl, new Faculty(null, "Crimsonia", "Silver"), Faculty.class);
+        restTemplate.postForObject(baseUrl, new Faculty(null, "Plain House", "CRIMSON"), Faculty.class);
+
+        QueryCounter.reset();
+        ResponseEntity<Faculty[]> response = restTemplate.getForEntity(
+                baseUrl + "/search?nameOrColor=crimson",
+                Faculty[].class
+        );
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody())
+                .extracting(Faculty::getName)
+                .containsExactly("Crimsonia", "Zeta Crimson", "Plain House");
+        assertThat(QueryCounter.count()).isZero();
+    }
+
+    @Test
+    @Order(10)
+    void shouldRefreshStatsWhenStudentChangesFaculty() {
+        Faculty first = restTemplate.postForObject(baseUrl, new Faculty(null, "Stats First", "Blue"), Faculty.class);
+        Faculty second = restTemplate.postForObject(baseUrl, new Faculty(null, "Stats Second", "Gold"), Faculty.class);
+        String studentUrl = "http://localhost:" + port + "/student";
+        Student younger = new Student("Stats Younger", 12);
+        younger.setFaculty(first);
+        younger = restTemplate.postForObject(studentUrl, younger, Student.class);
+        Student older = new Student("Stats Older", 16);
+        older.setFaculty(first);
+        restTemplate.postForObject(studentUrl, older, Student.class);
+
+        FacultyStats firstStats = findStats(first.getId());
+        assertThat(firstStats.students()).isEqualTo(2);
+        assertThat(firstStats.minAge()).isEqualTo(12);
+        assertThat(firstStats.maxAge()).isEqualTo(16);
+        assertThat(firstStats.averageAge()).isEqualTo(14.0);
+        assertThat(findStats(second.getId()).students()).isZero();
+
+        QueryCounter.reset();
+        restTemplate.getForEntity(baseUrl + "/stats", FacultyStats[].class);
+        assertThat(QueryCounter.count()).isZero();
+
+        younger.setFaculty(second);
+        restTemplate.put(studentUrl, younger);
+
+        assertThat(findStats(first.getId()).students()).isEqualTo(1);
+        assertThat(findStats(first.getId()).minAge()).isEqualTo(16);
+        assertThat(findStats(second.getId()).students()).isEqualTo(1);
+        assertThat(findStats(second.getId()).averageAge()).isEqualTo(12.0);
+    }
+
+    @Test
+    @Order(11)
+    void shouldKeepCatalogInStepWithEditsAndDeletes() {
+        String longName = "Catalog Faculty With The Longest Name Of Them All";
+        Faculty faculty = restTemplate.postForObject(baseUrl, new Faculty(null, longName, "Amber"), Faculty.class);
+
+        QueryCounter.reset();
+        assertThat(restTemplate.getForObject(baseUrl + "/longest-name", String.class)).isEqualTo(longName);
+        assertThat(restTemplate.getForObject(baseUrl + "/color/Amber", Faculty[].class))
+                .extracting(Faculty::getId).contains(faculty.getId());
+        assertThat(QueryCounter.count()).isZero();
+
+        restTemplate.put(baseUrl, new Faculty(faculty.getId(), "Catalog Short", "Violet"));
+
+        assertThat(restTemplate.getForObject(baseUrl + "/color/Amber", Faculty[].class))
+                .extracting(Faculty::getId).doesNotContain(faculty.getId());
+        assertThat(restTemplate.getForObject(baseUrl + "/color/Violet", Faculty[].class))
+                .extracting(Faculty::getName).contains("Catalog Short");
+        assertThat(restTemplate.getForObject(baseUrl + "/longest-name", String.class)).isNotEqualTo(longName);
+
+        restTemplate.delete(baseUrl + "/" + faculty.getId());
+
+        assertThat(restTemplate.getForObject(baseUrl + "/color/Violet", Faculty[].class))
+                .extracting(Faculty::getId).doesNotContain(faculty.getId());
+        assertThat(restTemplate.getForObject(baseUrl, Faculty[].class))
+                .extracting(Faculty::getId).doesNotContain(faculty.getId());
+        ResponseEntity<Faculty> editDeleted = restTemplate.exchange(baseUrl, HttpMethod.PUT,
+                new HttpEntity<>(new Faculty(faculty.getId(), "Catalog Ghost", "Grey")), Faculty.class);
+        assertThat(editDeleted.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    @Order(12)
+    void shouldKeepFacultyInCatalogWhenDeleteFails() {
+        Faculty faculty = restTemplate.postForObject(baseUrl, new Faculty(null, "Occupied Faculty", "Teal"), Faculty.class);
+        Student student = new Student("Occupied Student", 17);
+        student.setFaculty(faculty);
+        restTemplate.postForObject("http://localhost:" + port + "/student", student, Student.class);
+
+        ResponseEntity<Void> deleteResponse = restTemplate.exchange(baseUrl + "/" + faculty.getId(), HttpMethod.DELETE,
+                null, Void.class);
+
+        assertThat(deleteResponse.getStatusCode().is2xxSuccessful()).isFalse();
+        assertThat(restTemplate.getForEntity(baseUrl + "/" + faculty.getId(), Faculty.class).getStatusCode())
+                .isEqualTo(HttpStatus.OK);
+        assertThat(restTemplate.getForObject(baseUrl + "/color/Teal", Faculty[].class))
+                .extracting(Faculty::getId).contains(faculty.getId());
+    }
+
+    private FacultyStats findStats(Long facultyId) {
+        ResponseEntity<FacultyStats[]> response = restTemplate.getForEntity(baseUrl + "/stats", FacultyStats[].class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        return Arrays.stream(response.getBody())
+                .filter(stats -> stats.facultyId().equals(facultyId))
+                .findFirst()
+                .orElseThrow();
     }
-}
\ No newline at end of file
+}
@@ -10,10 +10,12 @@ import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import ru.hogwarts.school.model.Faculty;
-import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.model.StudentSlice;
+import ru.hogwarts.school.model.StudentSummary;
 import ru.hogwarts.school.service.FacultyService;
 
 import java.util.List;
+import java.util.Optional;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.when;
@@ -127,15 +129,37 @@ public class FacultyControllerWebMvcTest {
 
     @Test
     void shouldGetFacultyStudents() throws Exception {
-        Student student = new Student();
-        student.setId(1L);
-        student.setName("Harry Potter");
-        student.setAge(17);
+        StudentSummary student = new StudentSummary(1L, "Harry Potter", 17);
 
-        when(facultyService.getFacultyStudents(1L)).thenReturn(List.of(student));
+        when(facultyService.getFacultyStudents(1L, null, 50))
+                .thenReturn(Optional.of(new StudentSlice(List.of(student), null, false)));
 
         mockMvc.perform(MockMvcRequestBuilders.get("/faculty/{id}/students", 1L))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$[0].name").value("Harry Potter"));
+                .andExpect(jsonPath("$.content[0].name").value("Harry Potter"))
+                .andExpect(jsonPath("$.hasNext").value(false));
+    }
+
+    @Test
+    void shouldPassCursorForFacultyStudents() throws Exception {
+        StudentSummary student = new StudentSummary(7L, "Ron Weasley", 17);
+
+        when(facultyService.getFacultyStudents(1L, 5L, 2))
+                .thenReturn(Optional.of(new StudentSlice(List.of(student), 7L, true)));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/faculty/{id}/students", 1L)
+                        .param("cursor", "5")
+                        .param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].id").value(7))
+                .andExpect(jsonPath("$.nextCursor").value(7));
+    }
+
+    @Test
+    void shouldReturnNotFoundForStudentsOfUnknownFaculty() throws Exception {
+        when(facultyService.getFacultyStudents(99L, null, 50)).thenReturn(Optional.empty());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/faculty/{id}/students", 99L))
+                .andExpect(status().isNotFound());
     }
 }
@@ -1,19 +1,68 @@
 package ru.hogwarts.school.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import liquibase.exception.LiquibaseException;
+import liquibase.integration.spring.SpringLiquibase;
+import org.hibernate.SessionFactory;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.test.web.server.LocalServerPort;
 import org.springframework.http.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.Resource;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.QueryCounter;
+import ru.hogwarts.school.model.AvatarContent;
+import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.model.StudentNameMatch;
+import ru.hogwarts.school.repositories.AvatarContentRepository;
+import ru.hogwarts.school.repositories.FacultyRepository;
 import ru.hogwarts.school.repositories.StudentRepository;
+import ru.hogwarts.school.service.AvatarCacheStats;
+import ru.hogwarts.school.service.AvatarContentService;
+import ru.hogwarts.school.service.StudentBatchReport;
+import ru.hogwarts.school.service.StudentBatchResult;
+import ru.hogwarts.school.service.StudentNameIndexStats;
+import ru.hogwarts.school.service.StoredAvatarContent;
+import ru.hogwarts.school.storage.AvatarStorage;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 public class StudentControllerTestRestTemplateTest {
@@ -25,12 +74,247 @@ public class StudentControllerTestRestTemplateTest {
     private TestRestTemplate restTemplate;
     @Autowired
     private StudentRepository studentRepository;
+    @Autowired
+    private FacultyRepository facultyRepository;
+    @Autowired
+    private AvatarContentRepository avatarContentRepository;
+    @Autowired
+    private AvatarContentService avatarContentService;
+    @Autowired
+    private AvatarStorage avatarStorage;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private SpringLiquibase liquibase;
+    @Value("${avatars.dir.path}")
+    private Path avatarsDir;
 
 
     private String getBaseUrl() {
         return "http://localhost:" + port + "/student";
     }
 
+    // saving through the repository puts the new rows into the second-level cache
+    private void evictSecondLevelCache() {
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictAllRegions();
+    }
+
+    private List<Student> createStudentsWithFaculties(int age, int count) {
+        List<Student> students = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Faculty faculty = facultyRepository.save(new Faculty(null, "Факультет " + age + "-" + i, "Цвет " + i));
+            Student student = new Student("Студент " + age + "-" + i, age);
+            student.setFaculty(faculty);
+            students.add(studentRepository.save(student));
+        }
+        return students;
+    }
+
+    private ResponseEntity<String> uploadAvatar(Long studentId, byte[] content, MediaType mediaType) {
+        HttpHeaders partHeaders = new HttpHeaders();
+        partHeaders.setContentType(mediaType);
+        ByteArrayResource file = new ByteArrayResource(content) {
+            @Override
+            public String getFilename() {
+                return "avatar";
+            }
+        };
+
+        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        body.add("avatar", new HttpEntity<>(file, partHeaders));
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+
+        return restTemplate.postForEntity(getBaseUrl() + "/" + studentId + "/avatar",
+                new HttpEntity<>(body, headers), String.class);
+    }
+
+    // RestTemplate's default request factory drops DELETE bodies
+    private HttpResponse<String> deleteBatch(List<Long> ids) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(getBaseUrl() + "/batch"))
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .method("DELETE", HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(ids)))
+                .build();
+        return HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static byte[] pngImage(int width, int height, int rgb) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                image.setRGB(x, y, rgb ^ (x * 31 + y));
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void uploadAvatar_ThenDownload_ShouldReturnUploadedBytes() throws IOException {
+        Student student = restTemplate.postForObject(getBaseUrl(), new Student("Аватар Загрузка", 17), Student.class);
+        byte[] content = pngImage(40, 30, 0x336699);
+
+        ResponseEntity<String> upload = uploadAvatar(student.getId(), content, MediaType.IMAGE_PNG);
+        ResponseEntity<byte[]> download = restTemplate.getForEntity(
+                getBaseUrl() + "/" + student.getId() + "/avatar", byte[].class);
+
+        assertThat(upload.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(download.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(download.getHeaders().getContentType()).isEqualTo(MediaType.IMAGE_PNG);
+        assertThat(download.getBody()).isEqualTo(content);
+    }
+
+    @Test
+    public void downloadAvatar_FromLocalFile_ShouldBypassByteCache() throws IOException {
+        Student student = restTemplate.postForObject(getBaseUrl(), new Student("Аватар Файл", 17), Student.class);
+        byte[] content = pngImage(24, 24, 0x445566);
+        uploadAvatar(student.getId(), content, MediaType.IMAGE_PNG);
+        String statsUrl = "http://localhost:" + port + "/avatar/cache-stats";
+        AvatarCacheStats before = restTemplate.getForObject(statsUrl, AvatarCacheStats.class);
+
+        HttpHeaders rangeHeaders = new HttpHeaders();
+        rangeHeaders.setRange(List.of(HttpRange.createByteRange(4, 9)));
+        ResponseEntity<byte[]> full = restTemplate.getForEntity(
+                getBaseUrl() + "/" + student.getId() + "/avatar", byte[].class);
+        ResponseEntity<byte[]> range = restTemplate.exchange(getBaseUrl() + "/" + student.getId() + "/avatar",
+                HttpMethod.GET, new HttpEntity<>(rangeHeaders), byte[].class);
+        AvatarCacheStats after = restTemplate.getForObject(statsUrl, AvatarCacheStats.class);
+
+        assertThat(full.getBody()).isEqualTo(content);
+        assertThat(full.getHeaders().getLastModified()).isPositive();
+        assertThat(range.getStatusCode()).isEqualTo(HttpStatus.PARTIAL_CONTENT);
+        assertThat(range.getBody()).isEqualTo(Arrays.copyOfRange(content, 4, 10));
+        assertThat(after).isEqualTo(before);
+    }
+
+    @Test
+    public void uploadAvatar_OverSizeLimit_ShouldBeRejectedAndNotStored() {
+        Student student = restTemplate.postForObject(getBaseUrl(), new Student("Аватар Большой", 17), Student.class);
+
+        ResponseEntity<String> upload = uploadAvatar(student.getId(), new byte[307201], MediaType.IMAGE_PNG);
+        ResponseEntity<byte[]> download = restTemplate.getForEntity(
+                getBaseUrl() + "/" + student.getId() + "/avatar", byte[].class);
+
+        assertThat(upload.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(upload.getBody()).isEqualTo("File is too big");
+        assertThat(download.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    private ResponseEntity<byte[]> awaitPreview(Long studentId, int width, MediaType expected)
+            throws InterruptedException {
+        ResponseEntity<byte[]> preview;
+        long deadline = System.currentTimeMillis() + 10_000;
+        do {
+            preview = restTemplate.getForEntity(
+                    getBaseUrl() + "/" + studentId + "/avatar/preview?w=" + width, byte[].class);
+            if (expected.equals(preview.getHeaders().getContentType())) {
+                return preview;
+            }
+            Thread.sleep(50);
+        } while (System.currentTimeMillis() < deadline);
+        return preview;
+    }
+
+    @Test
+    public void downloadAvatarPreview_ShouldServeThumbnailsOnlyForDecodableImagesWithinPixelLimit() throws Exception {
+        Student oversized = restTemplate.postForObject(getBaseUrl(), new Student("Превью Огромное", 19), Student.class);
+        Student webp = restTemplate.postForObject(getBaseUrl(), new Student("Превью WebP", 19), Student.class);
+        Student regular = restTemplate.postForObject(getBaseUrl(), new Student("Превью Обычное", 19), Student.class);
+
+        ByteArrayOutputStream bitmap = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(5000, 4000, BufferedImage.TYPE_BYTE_BINARY), "png", bitmap);
+        byte[] webpContent = Files.readAllBytes(Path.of("avatars", "5.webp"));
+        uploadAvatar(oversized.getId(), bitmap.toByteArray(), MediaType.IMAGE_PNG);
+        uploadAvatar(webp.getId(), webpContent, MediaType.parseMediaType("image/webp"));
+        uploadAvatar(regular.getId(), pngImage(300, 200, 0x204060), MediaType.IMAGE_PNG);
+
+        ResponseEntity<byte[]> thumbnail = awaitPreview(regular.getId(), 64, MediaType.IMAGE_JPEG);
+        assertThat(thumbnail.getHeaders().getContentType()).isEqualTo(MediaType.IMAGE_JPEG);
+        assertThat(ImageIO.read(new ByteArrayInputStream(thumbnail.getBody())).getWidth()).isEqualTo(64);
+
+        ResponseEntity<byte[]> oversizedPreview = restTemplate.getForEntity(
+                getBaseUrl() + "/" + oversized.getId() + "/avatar/preview?w=64", byte[].class);
+        ResponseEntity<byte[]> webpPreview = restTemplate.getForEntity(
+                getBaseUrl() + "/" + webp.getId() + "/avatar/preview?w=64", byte[].class);
+
+        assertThat(oversizedPreview.getHeaders().getContentType()).isEqualTo(MediaType.IMAGE_PNG);
+        assertThat(oversizedPreview.getBody()).isEqualTo(bitmap.toByteArray());
+        assertThat(webpPreview.getHeaders().getContentType()).isEqualTo(MediaType.parseMediaType("image/webp"));
+        assertThat(webpPreview.getBody()).isEqualTo(webpContent);
+    }
+
+    private static String sha256(byte[] content) throws NoSuchAlgorithmException {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+    }
+
+    private Integer refCount(String contentHash) {
+        return avatarContentRepository.findById(contentHash).map(AvatarContent::getRefCount).orElse(null);
+    }
+
+    @Test
+    public void uploadAvatar_SameContentForTwoStudents_ShouldBeStoredOnceUntilLastReferenceIsGone() throws Exception {
+        Student first = restTemplate.postForObject(getBaseUrl(), new Student("Аватар Общий Первый", 18), Student.class);
+        Student second = restTemplate.postForObject(getBaseUrl(), new Student("Аватар Общий Второй", 18), Student.class);
+        byte[] shared = pngImage(33, 21, 0x123456);
+        String sharedHash = sha256(shared);
+
+        uploadAvatar(first.getId(), shared, MediaType.IMAGE_PNG);
+        uploadAvatar(second.getId(), shared, MediaType.IMAGE_PNG);
+
+        assertThat(refCount(sharedHash)).isEqualTo(2);
+        assertThat(avatarStorage.exists(sharedHash)).isTrue();
+
+        uploadAvatar(first.getId(), pngImage(33, 21, 0x112233), MediaType.IMAGE_PNG);
+        assertThat(refCount(sharedHash)).isEqualTo(1);
+        assertThat(avatarStorage.exists(sharedHash)).isTrue();
+
+        uploadAvatar(second.getId(), pngImage(33, 21, 0x654321), MediaType.IMAGE_PNG);
+        assertThat(refCount(sharedHash)).isNull();
+        assertThat(avatarStorage.exists(sharedHash)).isFalse();
+    }
+
+    @Test
+    public void storeAvatarContent_WhenContentIsAlreadyStored_ShouldNotWriteAnyFile() throws Exception {
+        byte[] content = pngImage(23, 29, 0x0d0e0f);
+        StoredAvatarContent first = avatarContentService.store(new ByteArrayResource(content));
+        try (WatchService watcher = avatarsDir.getFileSystem().newWatchService()) {
+            avatarsDir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE);
+            avatarStorage.localFile(first.contentHash()).orElseThrow().getParent()
+                    .register(watcher, StandardWatchEventKinds.ENTRY_CREATE);
+
+            StoredAvatarContent second = avatarContentService.store(new ByteArrayResource(content));
+
+            assertThat(second.contentHash()).isEqualTo(first.contentHash());
+            assertThat(refCount(first.contentHash())).isEqualTo(2);
+            assertThat(watcher.poll(200, TimeUnit.MILLISECONDS)).isNull();
+        } finally {
+            avatarContentService.release(first.contentHash());
+            avatarContentService.release(first.contentHash());
+        }
+    }
+
+    @Test
+    public void storeAvatarContent_WhenCallerTransactionRollsBack_ShouldReleaseReference() throws Exception {
+        byte[] content = pngImage(17, 19, 0x0a0b0c);
+        StoredAvatarContent stored = avatarContentService.store(new ByteArrayResource(content));
+        assertThat(refCount(stored.contentHash())).isEqualTo(1);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            avatarContentService.releaseOnRollback(stored.contentHash());
+            status.setRollbackOnly();
+        });
+
+        assertThat(refCount(stored.contentHash())).isNull();
+        assertThat(avatarStorage.exists(stored.contentHash())).isFalse();
+    }
+
     @Test
     public void getStudentInfo_WhenStudentExists_ShouldReturnStudent() {
         Long studentId = 1L;
@@ -42,6 +326,461 @@ public class StudentControllerTestRestTemplateTest {
         assertThat(response.getBody()).isNotNull();
     }
 
+    @Test
+    public void getStudentInfo_WithFaculty_ShouldUseSingleQuery() {
+        Student student = createStudentsWithFaculties(41, 1).get(0);
+        evictSecondLevelCache();
+
+        QueryCounter.reset();
+        ResponseEntity<Student> response = restTemplate.getForEntity(
+                getBaseUrl() + "/" + student.getId(), Student.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody().getFaculty().getName()).isEqualTo("Факультет 41-0");
+        assertThat(QueryCounter.count()).isLessThanOrEqualTo(1);
+    }
+
+    @Test
+    public void getStudentInfo_Repeated_ShouldBeServedFromCache() {
+        Student student = createStudentsWithFaculties(45, 1).get(0);
+        evictSecondLevelCache();
+        restTemplate.getForEntity(getBaseUrl() + "/" + student.getId(), Student.class);
+
+        QueryCounter.reset();
+        ResponseEntity<Student> response = restTemplate.getForEntity(
+                getBaseUrl() + "/" + student.getId(), Student.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody().getName()).isEqualTo("Студент 45-0");
+        assertThat(QueryCounter.count()).isZero();
+    }
+
+    @Test
+    public void getStudentInfo_AfterEdit_ShouldReturnUpdatedStudent() {
+        Student student = createStudentsWithFaculties(46, 1).get(0);
+        restTemplate.getForEntity(getBaseUrl() + "/" + student.getId(), Student.class);
+
+        Student updateRequest = new Student("Переименованный Студент", 47);
+        updateRequest.setId(student.getId());
+        restTemplate.exchange(getBaseUrl(), HttpMethod.PUT, new HttpEntity<>(updateRequest), Student.class);
+
+        ResponseEntity<Student> response = restTemplate.getForEntity(
+                getBaseUrl() + "/" + student.getId(), Student.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody().getName()).isEqualTo("Переименованный Студент");
+        assertThat(response.getBody().getAge()).isEqualTo(47);
+        assertThat(response.getBody().getFaculty()).isNull();
+    }
+
+    @Test
+    public void findStudents_WithFaculties_ShouldNotQueryPerStudent() {
+        createStudentsWithFaculties(42, 5);
+        evictSecondLevelCache();
+
+        QueryCounter.reset();
+        ResponseEntity<Student[]> response = restTemplate.getForEntity(
+                getBaseUrl() + "?age=42", Student[].class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).hasSize(5);
+        assertThat(response.getBody()).allSatisfy(student -> assertThat(student.getFaculty()).isNotNull());
+        assertThat(QueryCounter.count()).isLessThanOrEqualTo(1);
+    }
+
+    @Test
+    public void findStudentsByAgeRange_WithFaculties_ShouldNotQueryPerStudent() {
+        createStudentsWithFaculties(43, 5);
+        evictSecondLevelCache();
+
+        QueryCounter.reset();
+        ResponseEntity<String> response = restTemplate.getForEntity(
+                getBaseUrl() + "?minAge=43&maxAge=43", String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).contains("Факультет 43-4");
+        assertThat(QueryCounter.count()).isLessThanOrEqualTo(1);
+    }
+
+    @Test
+    public void findStudentsByAgeRange_AfterChanges_ShouldPageThroughIndexInAgeOrder() throws IOException {
+        Student firstSeventy = restTemplate.postForObject(getBaseUrl(), new Student("Диапазон 70-1", 70), Student.class);
+        Student secondSeventy = restTemplate.postForObject(getBaseUrl(), new Student("Диапазон 70-2", 70), Student.class);
+        Student moved = restTemplate.postForObject(getBaseUrl(), new Student("Диапазон 71", 71), Student.class);
+        Student kept = restTemplate.postForObject(getBaseUrl(), new Student("Диапазон 72-1", 72), Student.class);
+        Student removed = restTemplate.postForObject(getBaseUrl(), new Student("Диапазон 72-2", 72), Student.class);
+        Student outlier = restTemplate.postForObject(getBaseUrl(), new Student("Диапазон 200", 200), Student.class);
+        moved.setAge(73);
+        restTemplate.put(getBaseUrl(), moved);
+        restTemplate.delete(getBaseUrl() + "/" + removed.getId());
+
+        JsonNode firstPage = objectMapper.readTree(restTemplate.getForObject(
+                getBaseUrl() + "?minAge=70&maxAge=72&size=2&page=0", String.class));
+        JsonNode secondPage = objectMapper.readTree(restTemplate.getForObject(
+                getBaseUrl() + "?minAge=70&maxAge=72&size=2&page=1", String.class));
+        JsonNode outliers = objectMapper.readTree(restTemplate.getForObject(
+                getBaseUrl() + "?minAge=190&maxAge=210", String.class));
+        ResponseEntity<String> invalid = restTemplate.getForEntity(
+                getBaseUrl() + "?minAge=72&maxAge=70", String.class);
+
+        assertThat(firstPage.get("totalElements").asLong()).isEqualTo(3);
+        assertThat(firstPage.get("content")).extracting(student -> student.get("id").asLong())
+                .containsExactly(firstSeventy.getId(), secondSeventy.getId());
+        assertThat(secondPage.get("content")).extracting(student -> student.get("id").asLong())
+                .containsExactly(kept.getId());
+        assertThat(outliers.get("content")).extracting(student -> student.get("id").asLong())
+                .containsExactly(outlier.getId());
+        assertThat(invalid.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    public void getLastFiveStudents_WithFaculties_ShouldNotQueryDatabase() {
+        List<Long> expectedIds = new ArrayList<>(createStudentsWithFaculties(44, 5).stream().map(Student::getId).toList());
+        Collections.reverse(expectedIds);
+
+        QueryCounter.reset();
+        ResponseEntity<Student[]> response = restTemplate.getForEntity(
+                getBaseUrl() + "/last-five", Student[].class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).extracting(Student::getId).containsExactlyElementsOf(expectedIds);
+        assertThat(QueryCounter.count()).isZero();
+    }
+
+    @Test
+    public void getLastStudents_WithCount_ShouldFollowEditsAndDeletes() {
+        Student first = restTemplate.postForObject(getBaseUrl(), new Student("Недавний Первый", 13), Student.class);
+        Student second = restTemplate.postForObject(getBaseUrl(), new Student("Недавний Второй", 14), Student.class);
+        Student third = restTemplate.postForObject(getBaseUrl(), new Student("Недавний Третий", 15), Student.class);
+
+        second.setName("Недавний Переименованный");
+        restTemplate.put(getBaseUrl(), second);
+        restTemplate.delete(getBaseUrl() + "/" + third.getId());
+
+        QueryCounter.reset();
+        Student[] latest = restTemplate.getForObject(getBaseUrl() + "/last-five?n=2", Student[].class);
+
+        assertThat(latest).extracting(Student::getName)
+                .containsExactly("Недавний Переименованный", "Недавний Первый");
+        assertThat(latest[1].getId()).isEqualTo(first.getId());
+        assertThat(QueryCounter.count()).isZero();
+    }
+
+    @Test
+    public void getLastStudents_AfterDeletingMostOfWindow_ShouldRefillOnceOnRead() {
+        List<Student> older = createStudentsWithFaculties(49, 3);
+        List<Student> window = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            window.add(studentRepository.save(new Student("Окно " + i, 16)));
+        }
+        studentRepository.deleteAll(window.subList(0, 48));
+
+        QueryCounter.reset();
+        Student[] refilled = restTemplate.getForObject(getBaseUrl() + "/last-five", Student[].class);
+        Student[] cached = restTemplate.getForObject(getBaseUrl() + "/last-five", Student[].class);
+
+        List<Long> expectedIds = new ArrayList<>(List.of(window.get(49).getId(), window.get(48).getId()));
+        for (int i = older.size() - 1; i >= 0; i--) {
+            expectedIds.add(older.get(i).getId());
+        }
+        assertThat(refilled).extracting(Student::getId).containsExactlyElementsOf(expectedIds);
+        assertThat(cached).extracting(Student::getId).containsExactlyElementsOf(expectedIds);
+        assertThat(QueryCounter.count()).isEqualTo(1);
+    }
+
+    @Test
+    public void getLastStudents_WhenCommittedOutOfIdOrder_ShouldOrderById() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        Student[] committedLater = new Student[1];
+        Student committedFirst = transactionTemplate.execute(status -> {
+            committedLater[0] = studentRepository.save(new Student("Поздний Коммит", 12));
+            return restTemplate.postForObject(getBaseUrl(), new Student("Ранний Коммит", 12), Student.class);
+        });
+
+        Student[] latest = restTemplate.getForObject(getBaseUrl() + "/last-five?n=2", Student[].class);
+
+        assertThat(committedLater[0].getId()).isLessThan(committedFirst.getId());
+        assertThat(latest).extracting(Student::getId)
+                .containsExactly(committedFirst.getId(), committedLater[0].getId());
+    }
+
+    @Test
+    public void getStudentStatistics_ShouldNotQueryDatabase() {
+        QueryCounter.reset();
+        ResponseEntity<Integer> count = restTemplate.getForEntity(getBaseUrl() + "/count", Integer.class);
+        ResponseEntity<String> average = restTemplate.getForEntity(getBaseUrl() + "/average-age", String.class);
+
+        assertThat(count.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(average.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(QueryCounter.count()).isZero();
+    }
+
+    @Test
+    public void getStudentStatistics_AfterChanges_ShouldMatchDatabase() {
+        restTemplate.postForObject(getBaseUrl(), new Student("Статистика Остаётся", 91), Student.class);
+        Student edited = restTemplate.postForObject(getBaseUrl(), new Student("Статистика Меняется", 91), Student.class);
+        Student deleted = restTemplate.postForObject(getBaseUrl(), new Student("Статистика Удаляется", 93), Student.class);
+        edited.setAge(92);
+        restTemplate.put(getBaseUrl(), edited);
+        restTemplate.delete(getBaseUrl() + "/" + deleted.getId());
+
+        List<Student> students = studentRepository.findAll();
+        Integer count = restTemplate.getForObject(getBaseUrl() + "/count", Integer.class);
+        Double average = restTemplate.getForObject(getBaseUrl() + "/average-age", Double.class);
+        ResponseEntity<Map<Integer, Long>> histogram = restTemplate.exchange(getBaseUrl() + "/age-histogram",
+                HttpMethod.GET, null, new ParameterizedTypeReference<>() {
+                });
+
+        assertThat(count).isEqualTo(students.size());
+        assertThat(average).isCloseTo(students.stream().mapToInt(Student::getAge).average().orElse(0),
+                within(1e-9));
+        assertThat(histogram.getBody()).containsEntry(91, 1L).containsEntry(92, 1L).doesNotContainKey(93);
+    }
+
+    @Test
+    public void getAgeHistogram_WithAgesOutsideTrackedRange_ShouldMatchDatabase() {
+        restTemplate.postForObject(getBaseUrl(), new Student("Гистограмма 160", 160), Student.class);
+        Student edited = restTemplate.postForObject(getBaseUrl(), new Student("Гистограмма 161", 161), Student.class);
+        Student deleted = restTemplate.postForObject(getBaseUrl(), new Student("Гистограмма 300", 300), Student.class);
+        edited.setAge(160);
+        restTemplate.put(getBaseUrl(), edited);
+        restTemplate.delete(getBaseUrl() + "/" + deleted.getId());
+
+        ResponseEntity<Map<Integer, Long>> histogram = restTemplate.exchange(getBaseUrl() + "/age-histogram",
+                HttpMethod.GET, null, new ParameterizedTypeReference<>() {
+                });
+
+        assertThat(histogram.getBody())
+                .containsEntry(160, (long) studentRepository.findByAge(160).size())
+                .containsEntry(160, 2L)
+                .doesNotContainKeys(161, 300, 150);
+    }
+
+    @Test
+    public void autocompleteStudentNames_ShouldFollowChangesWithoutQueryingDatabase() {
+        Student first = restTemplate.postForObject(getBaseUrl(), new Student("Автокомплит Бета", 20), Student.class);
+        Student second = restTemplate.postForObject(getBaseUrl(), new Student("автокомплит Альфа", 21), Student.class);
+
+        QueryCounter.reset();
+        ResponseEntity<StudentNameMatch[]> response = restTemplate.getForEntity(
+                getBaseUrl() + "/autocomplete?q=АВТОКОМП&limit=5", StudentNameMatch[].class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).containsExactly(
+                new StudentNameMatch(second.getId(), "автокомплит Альфа"),
+                new StudentNameMatch(first.getId(), "Автокомплит Бета"));
+        assertThat(QueryCounter.count()).isZero();
+
+        first.setName("Автодополнен Гамма");
+        restTemplate.put(getBaseUrl(), first);
+        restTemplate.delete(getBaseUrl() + "/" + second.getId());
+
+        StudentNameMatch[] afterChanges = restTemplate.getForObject(
+                getBaseUrl() + "/autocomplete?q=автокомп", StudentNameMatch[].class);
+        StudentNameMatch[] renamed = restTemplate.getForObject(
+                getBaseUrl() + "/autocomplete?q=автодоп", StudentNameMatch[].class);
+
+        assertThat(afterChanges).isEmpty();
+        assertThat(renamed).containsExactly(new StudentNameMatch(first.getId(), "Автодополнен Гамма"));
+    }
+
+    @Test
+    public void autocompleteStats_AfterDeletes_ShouldCountOnlyLiveNamesAndNodes() {
+        StudentNameIndexStats before = restTemplate.getForObject(
+                getBaseUrl() + "/autocomplete/stats", StudentNameIndexStats.class);
+
+        List<Student> students = new ArrayList<>();
+        for (String name : List.of("Щукин Первый", "Щукин Второй", "Щеглов Третий")) {
+            students.add(restTemplate.postForObject(getBaseUrl(), new Student(name, 19), Student.class));
+        }
+        Student renamed = students.get(2);
+        renamed.setName("Щеглова Третья");
+        restTemplate.put(getBaseUrl(), renamed);
+
+        StudentNameIndexStats grown = restTemplate.getForObject(
+                getBaseUrl() + "/autocomplete/stats", StudentNameIndexStats.class);
+        assertThat(grown.names()).isEqualTo(before.names() + 3);
+        assertThat(grown.nodes()).isGreaterThan(before.nodes());
+        assertThat(restTemplate.getForObject(getBaseUrl() + "/autocomplete?q=щ", StudentNameMatch[].class))
+                .extracting(StudentNameMatch::name)
+                .containsExactlyInAnyOrder("Щукин Первый", "Щукин Второй", "Щеглова Третья");
+
+        for (Student student : students) {
+            restTemplate.delete(getBaseUrl() + "/" + student.getId());
+        }
+
+        StudentNameIndexStats after = restTemplate.getForObject(
+                getBaseUrl() + "/autocomplete/stats", StudentNameIndexStats.class);
+        assertThat(after.names()).isEqualTo(before.names());
+        assertThat(after.nodes()).isEqualTo(before.nodes());
+        assertThat(restTemplate.getForObject(getBaseUrl() + "/autocomplete?q=щ", StudentNameMatch[].class)).isEmpty();
+    }
+
+    @Test
+    public void exportStudents_AsNdjson_ShouldStreamEveryStudentWithFaculty() throws IOException {
+        List<Student> students = createStudentsWithFaculties(48, 3);
+        evictSecondLevelCache();
+
+        ResponseEntity<String> response = restTemplate.getForEntity(getBaseUrl() + "/export", String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.parseMediaType("application/x-ndjson"));
+        assertThat(response.getHeaders().getContentDisposition().getFilename()).isEqualTo("students.ndjson");
+        List<JsonNode> rows = new ArrayList<>();
+        for (String line : response.getBody().split("\n")) {
+            rows.add(objectMapper.readTree(line));
+        }
+        assertThat(rows).extracting(row -> row.get("id").asLong()).isSorted();
+        for (Student student : students) {
+            assertThat(rows).filteredOn(row -> row.get("id").asLong() == student.getId())
+                    .singleElement()
+                    .satisfies(row -> {
+                        assertThat(row.get("name").asText()).isEqualTo(student.getName());
+                        assertThat(row.get("facultyId").asLong()).isEqualTo(student.getFaculty().getId());
+                        assertThat(row.get("facultyName").asText()).isEqualTo(student.getFaculty().getName());
+                    });
+            assertThat(entityManagerFactory.getCache().contains(Student.class, student.getId())).isFalse();
+        }
+    }
+
+    @Test
+    public void exportStudents_AsCsv_ShouldQuoteNamesWithSeparators() {
+        Student student = restTemplate.postForObject(getBaseUrl(),
+                new Student("Экспорт, \"Кавычки\"", 49), Student.class);
+
+        ResponseEntity<String> response = restTemplate.getForEntity(getBaseUrl() + "/export?format=csv", String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getContentDisposition().getFilename()).isEqualTo("students.csv");
+        List<String> lines = response.getBody().lines().toList();
+        assertThat(lines.get(0)).isEqualTo("id,name,age,facultyId,facultyName");
+        assertThat(lines).contains(student.getId() + ",\"Экспорт, \"\"Кавычки\"\"\",49,,");
+    }
+
+    @Test
+    public void exportStudents_WithUnknownFormat_ShouldReturnBadRequest() {
+        ResponseEntity<String> response = restTemplate.getForEntity(getBaseUrl() + "/export?format=xml", String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    public void getStudentNamesByPrefix_ShouldMatchCaseInsensitivelyInUpperCaseOrder() {
+        restTemplate.postForObject(getBaseUrl(), new Student("Префиксова Вера", 22), Student.class);
+        restTemplate.postForObject(getBaseUrl(), new Student("префиксова анна", 22), Student.class);
+        restTemplate.postForObject(getBaseUrl(), new Student("ПРЕФИКСОВА БОРИС", 22), Student.class);
+        restTemplate.postForObject(getBaseUrl(), new Student("Префикс%Знак", 22), Student.class);
+
+        String[] firstTwo = restTemplate.getForObject(getBaseUrl() + "/names?prefix=префиксова&limit=2", String[].class);
+        String[] all = restTemplate.getForObject(getBaseUrl() + "/names?prefix=ПРЕФИКС", String[].class);
+        String[] literal = restTemplate.getForObject(getBaseUrl() + "/names?prefix={prefix}", String[].class,
+                "префикс%");
+
+        assertThat(firstTwo).containsExactly("префиксова анна", "ПРЕФИКСОВА БОРИС");
+        assertThat(all).containsExactly("Префикс%Знак",
+                "префиксова анна", "ПРЕФИКСОВА БОРИС", "Префиксова Вера");
+        assertThat(literal).containsExactly("Префикс%Знак");
+    }
+
+    @Test
+    public void getStudentNamesStartingWithA_ShouldReturnUpperCaseNamesInOrder() {
+        restTemplate.postForObject(getBaseUrl(), new Student("alice Starting", 23), Student.class);
+        restTemplate.postForObject(getBaseUrl(), new Student("Aaron Starting", 23), Student.class);
+        restTemplate.postForObject(getBaseUrl(), new Student("Bob Starting", 23), Student.class);
+
+        String[] names = restTemplate.getForObject(getBaseUrl() + "/names-starting-with-a", String[].class);
+
+        assertThat(names).isSorted()
+                .allMatch(name -> name.startsWith("A"))
+                .contains("AARON STARTING", "ALICE STARTING")
+                .doesNotContain("BOB STARTING");
+    }
+
+    @Test
+    public void batchEndpoints_ShouldReportEveryItemAndApplyOnlyValidOnes() throws Exception {
+        Faculty faculty = facultyRepository.save(new Faculty(null, "Пакетный Факультет", "Пакетный Цвет"));
+        Student withFaculty = new Student("Пакетный Первый", 31);
+        withFaculty.setFaculty(new Faculty(faculty.getId(), null, null));
+        Student withUnknownFaculty = new Student("Пакетный Второй", 32);
+        withUnknownFaculty.setFaculty(new Faculty(999_999L, null, null));
+
+        StudentBatchReport created = restTemplate.postForObject(getBaseUrl() + "/batch",
+                Arrays.asList(withFaculty, withUnknownFaculty, null), StudentBatchReport.class);
+
+        assertThat(created.succeeded()).isEqualTo(1);
+        assertThat(created.results()).extracting(StudentBatchResult::status).containsExactly(
+                StudentBatchResult.Status.SUCCEEDED, StudentBatchResult.Status.FAILED, StudentBatchResult.Status.FAILED);
+        assertThat(created.results()).extracting(StudentBatchResult::message)
+                .containsExactly(null, "Faculty not found", "Student is empty");
+        Long createdId = created.results().get(0).studentId();
+        assertThat(restTemplate.getForObject(getBaseUrl() + "/" + createdId, Student.class).getFaculty().getName())
+                .isEqualTo("Пакетный Факультет");
+
+        Student rename = new Student("Пакетный Переименованный", 33);
+        rename.setId(createdId);
+        Student missing = new Student("Пакетный Отсутствующий", 34);
+        missing.setId(999_999L);
+        ResponseEntity<StudentBatchReport> edited = restTemplate.exchange(getBaseUrl() + "/batch", HttpMethod.PUT,
+                new HttpEntity<>(List.of(rename, missing, new Student("Без Идентификатора", 35))),
+                StudentBatchReport.class);
+
+        assertThat(edited.getBody().results()).extracting(StudentBatchResult::status).containsExactly(
+                StudentBatchResult.Status.SUCCEEDED, StudentBatchResult.Status.NOT_FOUND,
+                StudentBatchResult.Status.FAILED);
+        Student renamed = restTemplate.getForObject(getBaseUrl() + "/" + createdId, Student.class);
+        assertThat(renamed.getName()).isEqualTo("Пакетный Переименованный");
+        assertThat(renamed.getAge()).isEqualTo(33);
+        assertThat(renamed.getFaculty()).isNull();
+
+        HttpResponse<String> deleted = deleteBatch(Arrays.asList(createdId, 999_999L, null));
+
+        assertThat(deleted.statusCode()).isEqualTo(HttpStatus.OK.value());
+        assertThat(objectMapper.readValue(deleted.body(), StudentBatchReport.class).results()).extracting(StudentBatchResult::status).containsExactly(
+                StudentBatchResult.Status.SUCCEEDED, StudentBatchResult.Status.NOT_FOUND,
+                StudentBatchResult.Status.FAILED);
+        assertThat(restTemplate.getForEntity(getBaseUrl() + "/" + createdId, String.class).getStatusCode())
+                .isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    public void batchCreate_AfterSequenceReseedAboveExistingIds_ShouldNotReuseIds() {
+        long top = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM student", Long.class) + 1000;
+        List<Object[]> seeded = new ArrayList<>();
+        for (long id = top - 60; id <= top; id++) {
+            seeded.add(new Object[]{id, "Перенесённый " + id, 40});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO student (id, name, age) VALUES (?, ?, ?)", seeded);
+        try {
+            jdbcTemplate.update("DELETE FROM DATABASECHANGELOG WHERE ID = '18' AND AUTHOR = 'rzubairov'");
+            liquibase.afterPropertiesSet();
+
+            List<Student> students = new ArrayList<>();
+            for (int i = 0; i < 120; i++) {
+                students.add(new Student("Пакетная Синхронизация " + i, 18));
+            }
+            StudentBatchReport report = restTemplate.postForObject(getBaseUrl() + "/batch", students,
+                    StudentBatchReport.class);
+
+            assertThat(report.succeeded()).isEqualTo(120);
+            assertThat(report.results()).extracting(StudentBatchResult::studentId)
+                    .doesNotHaveDuplicates()
+                    .noneMatch(id -> id >= top - 60 && id <= top)
+                    .allMatch(id -> id <= top + students.size());
+        } catch (LiquibaseException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            jdbcTemplate.update("DELETE FROM student WHERE id BETWEEN ? AND ?", top - 60, top);
+        }
+    }
+
+    @Test
+    public void batchEndpoints_OverItemLimit_ShouldReturnBadRequest() throws Exception {
+        HttpResponse<String> response = deleteBatch(Collections.nCopies(10_001, 999_999L));
+
+        assertThat(response.statusCode()).isEqualTo(HttpStatus.BAD_REQUEST.value());
+        assertThat(response.body()).isEqualTo("Batch exceeds the limit of 10000 students");
+    }
+
     @Test
     public void getStudentInfo_WhenStudentNotExists_ShouldReturnNotFound() {
         Long nonExistentStudentId = 999L;
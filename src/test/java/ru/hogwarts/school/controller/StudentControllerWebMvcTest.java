@@ -5,19 +5,30 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import ru.hogwarts.school.model.Avatar;
 import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.service.AvatarPreview;
+import ru.hogwarts.school.service.AvatarService;
+import ru.hogwarts.school.service.StudentBatchService;
+import ru.hogwarts.school.service.StudentExportService;
 import ru.hogwarts.school.service.StudentService;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
+import java.util.Optional;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -40,6 +51,15 @@ public class StudentControllerWebMvcTest {
     @MockBean
     private StudentService studentService;
 
+    @MockBean
+    private AvatarService avatarService;
+
+    @MockBean
+    private StudentExportService studentExportService;
+
+    @MockBean
+    private StudentBatchService studentBatchService;
+
     private Student createTestStudent() {
         Student student = new Student();
         student.setId(STUDENT_ID);
@@ -52,7 +72,6 @@ public class StudentControllerWebMvcTest {
         Avatar avatar = new Avatar();
         avatar.setId(STUDENT_ID);
         avatar.setMediaType("image/jpeg");
-        avatar.setData(new byte[]{1, 2, 3});
         avatar.setFileSize(1024L);
         avatar.setFilePath("/path/to/avatar.jpg");
         return avatar;
@@ -161,13 +180,23 @@ public class StudentControllerWebMvcTest {
 
     @Test
     public void downloadAvatarPreviewWithValidIdShouldReturnAvatarData() throws Exception {
-        Avatar avatar = createTestAvatar();
-        when(studentService.findAvatar(STUDENT_ID)).thenReturn(avatar);
+        Path tempFile = Files.createTempFile("avatar", ".jpg");
+        byte[] testData = new byte[]{1, 2, 3};
+        Files.write(tempFile, testData);
 
-        mockMvc.perform(get("/student/{id}/avatar/preview", STUDENT_ID))
-                .andExpect(status().isOk())
-                .andExpect(content().contentType(MediaType.parseMediaType("image/jpeg")))
-                .andExpect(content().bytes(avatar.getData()));
+        try {
+            Avatar avatar = createTestAvatar();
+            avatar.setFilePath(tempFile.toAbsolutePath().toString());
+            when(avatarService.findAvatarPreview(STUDENT_ID, null))
+                    .thenReturn(Optional.of(new AvatarPreview(new FileSystemResource(tempFile), avatar.getMediaType())));
+
+            mockMvc.perform(get("/student/{id}/avatar/preview", STUDENT_ID))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(MediaType.parseMediaType("image/jpeg")))
+                    .andExpect(content().bytes(testData));
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
     }
 
     @Test
@@ -187,13 +216,46 @@ public class StudentControllerWebMvcTest {
             mockAvatar.setFileSize((long) testData.length);
 
 
-            when(studentService.findAvatar(studentId)).thenReturn(mockAvatar);
+            when(avatarService.findAvatarByStudentId(studentId)).thenReturn(Optional.of(mockAvatar));
+            when(avatarService.findAvatarFile(mockAvatar)).thenReturn(Optional.of(tempFile));
 
             mockMvc.perform(get("/student/{id}/avatar", studentId))
                     .andExpect(status().isOk())
                     .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "image/jpeg"))
                     .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, testData.length))
                     .andExpect(content().bytes(testData));
+            verify(avatarService, never()).findAvatarData(any());
+
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    @Test
+    void downloadAvatarWithRangeHeaderShouldReturnPartialContent() throws Exception {
+        Long studentId = 1L;
+
+        Path tempFile = Files.createTempFile("avatar", ".jpg");
+        byte[] testData = new byte[]{1, 2, 3, 4, 5};
+        Files.write(tempFile, testData);
+
+        try {
+            Avatar mockAvatar = new Avatar();
+            mockAvatar.setId(1L);
+            mockAvatar.setMediaType("image/jpeg");
+            mockAvatar.setFilePath(tempFile.toAbsolutePath().toString());
+            mockAvatar.setFileSize((long) testData.length);
+
+            when(avatarService.findAvatarByStudentId(studentId)).thenReturn(Optional.of(mockAvatar));
+            when(avatarService.findAvatarFile(mockAvatar)).thenReturn(Optional.of(tempFile));
+
+            mockMvc.perform(get("/student/{id}/avatar", studentId)
+                            .header(HttpHeaders.RANGE, "bytes=1-3"))
+                    .andExpect(status().isPartialContent())
+                    .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 1-3/5"))
+                    .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 3))
+                    .andExpect(content().bytes(new byte[]{2, 3, 4}));
+            verify(avatarService, never()).findAvatarData(any());
 
         } finally {
             Files.deleteIfExists(tempFile);
@@ -205,22 +267,30 @@ public class StudentControllerWebMvcTest {
         // Given
         Long studentId = 1L;
 
-        // Создаем mock аватара
-        Avatar mockAvatar = new Avatar();
-        mockAvatar.setId(1L);
-        mockAvatar.setMediaType("image/jpeg");
-        mockAvatar.setData(new byte[]{1, 2, 3, 4, 5});
-        mockAvatar.setFileSize(5L);
+        Path tempFile = Files.createTempFile("avatar", ".jpg");
+        Files.write(tempFile, new byte[]{1, 2, 3, 4, 5});
+
+        try {
+            // Создаем mock аватара
+            Avatar mockAvatar = new Avatar();
+            mockAvatar.setId(1L);
+            mockAvatar.setMediaType("image/jpeg");
+            mockAvatar.setFilePath(tempFile.toAbsolutePath().toString());
+            mockAvatar.setFileSize(5L);
 
-        // Настраиваем моки
-        when(studentService.findAvatar(studentId)).thenReturn(mockAvatar);
+            // Настраиваем моки
+            when(avatarService.findAvatarPreview(studentId, null))
+                    .thenReturn(Optional.of(new AvatarPreview(new FileSystemResource(tempFile), mockAvatar.getMediaType())));
 
-        // When & Then
-        mockMvc.perform(get("/student/{id}/avatar/preview", studentId))
-                .andExpect(status().isOk())
-                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "image/jpeg"))
-                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 5))
-                .andExpect(content().bytes(new byte[]{1, 2, 3, 4, 5}));
+            // When & Then
+            mockMvc.perform(get("/student/{id}/avatar/preview", studentId))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "image/jpeg"))
+                    .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 5))
+                    .andExpect(content().bytes(new byte[]{1, 2, 3, 4, 5}));
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
     }
 
     @Test
@@ -237,4 +307,18 @@ public class StudentControllerWebMvcTest {
                         .file(largeFile))
                 .andExpect(status().isBadRequest());
     }
-}
\ No newline at end of file
+
+    @Test
+    void exportStudentsShouldUseExportTimeoutInsteadOfGlobalAsyncTimeout() throws Exception {
+        when(studentExportService.getTimeout()).thenReturn(Duration.ofMinutes(5));
+
+        MvcResult result = mockMvc.perform(get("/student/export").param("format", "csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        assertThat(result.getRequest().getAsyncContext().getTimeout()).isEqualTo(Duration.ofMinutes(5).toMillis());
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "text/csv"));
+    }
+}